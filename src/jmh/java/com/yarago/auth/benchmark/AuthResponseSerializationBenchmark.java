@@ -0,0 +1,75 @@
+package com.yarago.auth.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yarago.auth.dto.AuthResponse;
+import com.yarago.auth.security.JwtKeyRing;
+import com.yarago.auth.security.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the login response body as AuthController returns it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthResponseSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Map<String, Object> body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Same defaults Spring Boot applies to the MVC ObjectMapper
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        JwtUtil jwtUtil = BenchmarkFixtures.jwtUtil(JwtKeyRing.ALGORITHM_HS512, true, false,
+            BenchmarkFixtures.verifiedTokenCache(false), BenchmarkFixtures.roleBitmap());
+        UserDetails userDetails = BenchmarkFixtures.userDetails();
+
+        AuthResponse response = AuthResponse.builder()
+            .accessToken(jwtUtil.generateAccessToken(userDetails,
+                BenchmarkFixtures.USER_ID, BenchmarkFixtures.BRANCH_ID))
+            .refreshToken(jwtUtil.generateRefreshToken(userDetails.getUsername()))
+            .tokenType("Bearer")
+            .expiresIn(jwtUtil.getAccessTokenExpirationInSeconds())
+            .user(AuthResponse.UserInfo.builder()
+                .id(BenchmarkFixtures.USER_ID)
+                .username(userDetails.getUsername())
+                .email("dr.benchmark@yarago.com")
+                .firstName("Benchmark")
+                .lastName("Doctor")
+                .phoneNumber("+91 98765 43210")
+                .designation("Consultant Ophthalmologist")
+                .department("Cataract")
+                .employeeId("EMP-0042")
+                .roles(Set.of("ROLE_DOCTOR", "ROLE_OPTOMETRIST"))
+                .branchId(BenchmarkFixtures.BRANCH_ID)
+                .active(true)
+                .build())
+            .build();
+
+        body = new HashMap<>();
+        body.put("success", true);
+        body.put("message", "Login successful");
+        body.put("data", response);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(body);
+    }
+}
@@ -0,0 +1,159 @@
+package com.yarago.auth.benchmark;
+
+import com.yarago.auth.entity.Role;
+import com.yarago.auth.repository.DeletedUserTokenEpochRepository;
+import com.yarago.auth.repository.RoleRepository;
+import com.yarago.auth.repository.UserRepository;
+import com.yarago.auth.security.AccessTokenDenylist;
+import com.yarago.auth.security.FastAccessTokenVerifier;
+import com.yarago.auth.security.JwtKeyRing;
+import com.yarago.auth.security.JwtUtil;
+import com.yarago.auth.security.RoleBitmap;
+import com.yarago.auth.security.TokenValidityService;
+import com.yarago.auth.security.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Wires the security components outside Spring with the same settings as application.yml
+ * Package-private init methods are invoked reflectively, exactly once like @PostConstruct would
+ */
+final class BenchmarkFixtures {
+
+    static final long USER_ID = 42L;
+    static final long BRANCH_ID = 7L;
+    static final long ACCESS_TOKEN_EXPIRATION = 3_600_000L;
+    static final long REFRESH_TOKEN_EXPIRATION = 604_800_000L;
+    static final String SECRET = "benchmark-secret-key-that-is-long-enough-for-hs512-signing-0123456789abcdef";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Doctor with the role mix most requests carry
+     */
+    static UserDetails userDetails() {
+        return User.withUsername("dr.benchmark")
+            .password("unused")
+            .authorities(List.of(
+                new SimpleGrantedAuthority("ROLE_DOCTOR"),
+                new SimpleGrantedAuthority("ROLE_OPTOMETRIST")))
+            .build();
+    }
+
+    /**
+     * Role bitmap over the roles seeded by V2__seed_roles_and_users.sql
+     */
+    static RoleBitmap roleBitmap() {
+        RoleRepository roleRepository = Mockito.mock(RoleRepository.class);
+        List<String> names = List.of("ROLE_ADMIN", "ROLE_DOCTOR", "ROLE_OPTOMETRIST", "ROLE_RECEPTIONIST",
+            "ROLE_BILLING_STAFF", "ROLE_COUNSELOR", "ROLE_PHARMACIST", "ROLE_LAB_TECHNICIAN");
+        List<Role> roles = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            roles.add(new Role((long) i + 1, names.get(i), null, null, null));
+        }
+        Mockito.when(roleRepository.findAll()).thenReturn(roles);
+
+        RoleBitmap roleBitmap = new RoleBitmap(roleRepository);
+        ReflectionTestUtils.setField(roleBitmap, "unknownBitReloadInterval", Duration.ofSeconds(30));
+        ReflectionTestUtils.invokeMethod(roleBitmap, "loadRoles");
+        return roleBitmap;
+    }
+
+    static VerifiedTokenCache verifiedTokenCache(boolean enabled) {
+        VerifiedTokenCache cache = new VerifiedTokenCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "maximumSize", 10_000L);
+        ReflectionTestUtils.invokeMethod(cache, "initCache");
+        return cache;
+    }
+
+    static JwtUtil jwtUtil(String algorithm, boolean fastVerifier, boolean compactRoles,
+                           VerifiedTokenCache cache, RoleBitmap roleBitmap) {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("jwt.secret", SECRET)
+            .withProperty("jwt.signing.algorithm", algorithm);
+        if (!JwtKeyRing.ALGORITHM_HS512.equals(algorithm)) {
+            KeyPair keyPair = generateKeyPair(algorithm);
+            environment
+                .withProperty("jwt.signing.private-key", pem("PRIVATE KEY", keyPair.getPrivate().getEncoded()))
+                .withProperty("jwt.signing.public-key", pem("PUBLIC KEY", keyPair.getPublic().getEncoded()));
+        }
+
+        JwtUtil jwtUtil = new JwtUtil(environment, cache, new FastAccessTokenVerifier(roleBitmap), roleBitmap);
+        ReflectionTestUtils.setField(jwtUtil, "fastVerifierEnabled", fastVerifier);
+        ReflectionTestUtils.setField(jwtUtil, "compactRoles", compactRoles);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", ACCESS_TOKEN_EXPIRATION);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", REFRESH_TOKEN_EXPIRATION);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "initKeyRing");
+        return jwtUtil;
+    }
+
+    /**
+     * Validity service with no revoked users, the steady state of the stateless filter
+     */
+    static TokenValidityService tokenValidityService(VerifiedTokenCache cache) {
+        TokenValidityService service = new TokenValidityService(Mockito.mock(UserRepository.class),
+            Mockito.mock(DeletedUserTokenEpochRepository.class), cache,
+            Mockito.mock(StringRedisTemplate.class), Mockito.mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(service, "accessTokenExpiration", ACCESS_TOKEN_EXPIRATION);
+        return service;
+    }
+
+    /**
+     * Empty denylist mapped from a temporary file, every lookup probes and misses
+     */
+    static AccessTokenDenylist accessTokenDenylist() {
+        AccessTokenDenylist denylist = new AccessTokenDenylist(Mockito.mock(StringRedisTemplate.class),
+            Mockito.mock(RedisMessageListenerContainer.class), new SimpleMeterRegistry());
+        try {
+            Path file = Files.createTempFile("token-denylist", ".bin");
+            file.toFile().deleteOnExit();
+            ReflectionTestUtils.setField(denylist, "file", file);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        ReflectionTestUtils.setField(denylist, "requestedCapacity", 65_536);
+        ReflectionTestUtils.setField(denylist, "channel", "auth:token-denylist");
+        ReflectionTestUtils.invokeMethod(denylist, "open");
+        return denylist;
+    }
+
+    private static KeyPair generateKeyPair(String algorithm) {
+        try {
+            if (JwtKeyRing.ALGORITHM_EDDSA.equals(algorithm)) {
+                return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+            }
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate " + algorithm + " key pair", e);
+        }
+    }
+
+    private static String pem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+            + Base64.getMimeEncoder().encodeToString(der)
+            + "\n-----END " + type + "-----\n";
+    }
+}
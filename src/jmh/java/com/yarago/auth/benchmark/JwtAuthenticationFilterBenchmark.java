@@ -0,0 +1,93 @@
+package com.yarago.auth.benchmark;
+
+import com.yarago.auth.security.JwtAuthenticationFilter;
+import com.yarago.auth.security.JwtKeyRing;
+import com.yarago.auth.security.JwtUtil;
+import com.yarago.auth.security.RoleBitmap;
+import com.yarago.auth.security.VerifiedTokenCache;
+import jakarta.servlet.FilterChain;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through JwtAuthenticationFilter with mocked servlet objects
+ * With stateless=false the user lookup is a Mockito stub, so the figure excludes the database round trip
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    @Param({"true", "false"})
+    private boolean stateless;
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RoleBitmap roleBitmap = BenchmarkFixtures.roleBitmap();
+        VerifiedTokenCache verifiedTokenCache = BenchmarkFixtures.verifiedTokenCache(cache);
+        JwtUtil jwtUtil = BenchmarkFixtures.jwtUtil(JwtKeyRing.ALGORITHM_HS512, true, false,
+            verifiedTokenCache, roleBitmap);
+
+        UserDetails userDetails = BenchmarkFixtures.userDetails();
+        UserDetailsService userDetailsService = Mockito.mock(UserDetailsService.class);
+        Mockito.when(userDetailsService.loadUserByUsername(userDetails.getUsername())).thenReturn(userDetails);
+
+        filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService,
+            BenchmarkFixtures.tokenValidityService(verifiedTokenCache), roleBitmap,
+            BenchmarkFixtures.accessTokenDenylist());
+        ReflectionTestUtils.setField(filter, "statelessAuthentication", stateless);
+
+        String accessToken = jwtUtil.generateAccessToken(userDetails,
+            BenchmarkFixtures.USER_ID, BenchmarkFixtures.BRANCH_ID);
+        request = new MockHttpServletRequest("GET", "/api/auth/me");
+        request.addHeader("Authorization", "Bearer " + accessToken);
+        request.setRemoteAddr("10.0.0.15");
+        response = new MockHttpServletResponse();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Authentication doFilter() throws Exception {
+        // OncePerRequestFilter marks the request as filtered, clear it so every invocation runs the filter
+        request.clearAttributes();
+        SecurityContextHolder.clearContext();
+
+        filter.doFilter(request, response, NO_OP_CHAIN);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new IllegalStateException("Request was not authenticated");
+        }
+        return authentication;
+    }
+}
@@ -0,0 +1,85 @@
+package com.yarago.auth.benchmark;
+
+import com.yarago.auth.security.JwtUtil;
+import com.yarago.auth.security.RoleBitmap;
+import com.yarago.auth.security.VerifiedToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation, verification and claim extraction in JwtUtil
+ * legacyValidation replays the pre-VerifiedToken filter path, three full parses per request.
+ * The verified token cache is off by default so the numbers measure signature checks, run with
+ * -p cache=true to see the cached steady state
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtBenchmark {
+
+    @Param({"HS512", "EdDSA", "ES256"})
+    private String algorithm;
+
+    @Param({"true", "false"})
+    private boolean fastVerifier;
+
+    @Param({"false"})
+    private boolean compactRoles;
+
+    @Param({"false"})
+    private boolean cache;
+
+    private JwtUtil jwtUtil;
+    private UserDetails userDetails;
+    private String accessToken;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RoleBitmap roleBitmap = BenchmarkFixtures.roleBitmap();
+        jwtUtil = BenchmarkFixtures.jwtUtil(algorithm, fastVerifier, compactRoles,
+            BenchmarkFixtures.verifiedTokenCache(cache), roleBitmap);
+        userDetails = BenchmarkFixtures.userDetails();
+        accessToken = jwtUtil.generateAccessToken(userDetails, BenchmarkFixtures.USER_ID, BenchmarkFixtures.BRANCH_ID);
+        if (jwtUtil.verifyToken(accessToken).isEmpty()) {
+            throw new IllegalStateException("Benchmark token does not verify");
+        }
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtUtil.generateAccessToken(userDetails, BenchmarkFixtures.USER_ID, BenchmarkFixtures.BRANCH_ID);
+    }
+
+    @Benchmark
+    public String generateRefreshToken() {
+        return jwtUtil.generateRefreshToken(userDetails.getUsername());
+    }
+
+    @Benchmark
+    public VerifiedToken verifyToken() {
+        return jwtUtil.verifyToken(accessToken).orElseThrow();
+    }
+
+    @Benchmark
+    public Long extractUserId() {
+        return jwtUtil.extractUserId(accessToken);
+    }
+
+    @Benchmark
+    public void legacyValidation(Blackhole blackhole) {
+        blackhole.consume(jwtUtil.validateToken(accessToken));
+        blackhole.consume(jwtUtil.extractUsername(accessToken));
+        blackhole.consume(jwtUtil.validateToken(accessToken, userDetails));
+    }
+}
@@ -0,0 +1,52 @@
+package com.yarago.auth.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt encode and matches at the cost used by SecurityConfig (10, the BCryptPasswordEncoder default)
+ * Higher costs are listed for comparison, each step doubles the work
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "Yarago@2025";
+
+    @Param({"10", "12"})
+    private int strength;
+
+    private BCryptPasswordEncoder passwordEncoder;
+    private String encodedPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        passwordEncoder = new BCryptPasswordEncoder(strength);
+        encodedPassword = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, encodedPassword);
+    }
+}
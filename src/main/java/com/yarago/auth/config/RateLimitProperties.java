@@ -0,0 +1,48 @@
+package com.yarago.auth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rate limits for the unauthenticated auth endpoints, bound from auth.rate-limit
+ * Each endpoint can limit by client IP and by the submitted username independently
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "auth.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Upper bound on tracked keys, least recently used keys are dropped first
+     */
+    private long maxTrackedKeys = 100_000;
+
+    /**
+     * Keys idle this long are forgotten, their bucket would be full again anyway
+     */
+    private Duration idleExpiry = Duration.ofMinutes(10);
+
+    /**
+     * Limits per endpoint name: login, register, refresh
+     */
+    private Map<String, EndpointLimits> endpoints = new HashMap<>();
+
+    @Data
+    public static class EndpointLimits {
+        private Limit ip;
+        private Limit username;
+    }
+
+    @Data
+    public static class Limit {
+        private int burst = 10;
+        private int perMinute = 60;
+    }
+}
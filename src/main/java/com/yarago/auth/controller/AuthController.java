@@ -1,6 +1,9 @@
 package com.yarago.auth.controller;
 
 import com.yarago.auth.dto.*;
+import com.yarago.auth.security.ClientIpResolver;
+import com.yarago.auth.security.RateLimiter;
+import com.yarago.auth.security.VerifiedToken;
 import com.yarago.auth.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -26,6 +29,8 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthService authService;
+    private final ClientIpResolver clientIpResolver;
+    private final RateLimiter rateLimiter;
 
     /**
      * User login
@@ -36,7 +41,10 @@ public class AuthController {
             @Valid @RequestBody LoginRequest request,
             HttpServletRequest httpRequest) {
 
-        request.setIpAddress(getClientIpAddress(httpRequest));
+        // Per-IP limits are applied by RateLimitFilter, the username is only known once the body is read
+        rateLimiter.checkUsername(RateLimiter.ENDPOINT_LOGIN, request.getUsername());
+
+        request.setIpAddress(clientIpResolver.resolve(httpRequest));
         request.setUserAgent(httpRequest.getHeader("User-Agent"));
 
         AuthResponse response = authService.login(request);
@@ -55,6 +63,8 @@ public class AuthController {
     @PostMapping("/register")
     @Operation(summary = "Register", description = "Register new user")
     public ResponseEntity<Map<String, Object>> register(@Valid @RequestBody RegisterRequest request) {
+        rateLimiter.checkUsername(RateLimiter.ENDPOINT_REGISTER, request.getUsername());
+
         AuthResponse response = authService.register(request);
 
         Map<String, Object> result = new HashMap<>();
@@ -88,7 +98,9 @@ public class AuthController {
     @Operation(summary = "Logout", description = "Logout user and revoke tokens")
     public ResponseEntity<Map<String, Object>> logout(Authentication authentication) {
         if (authentication != null) {
-            authService.logout(authentication.getName());
+            // The verified access token is the credentials, logout revokes it along with the refresh tokens
+            authService.logout(authentication.getName(),
+                authentication.getCredentials() instanceof VerifiedToken token ? token : null);
         }
 
         Map<String, Object> result = new HashMap<>();
@@ -124,32 +136,4 @@ public class AuthController {
 
         return ResponseEntity.ok(result);
     }
-
-    /**
-     * Extract client IP address
-     */
-    private String getClientIpAddress(HttpServletRequest request) {
-        String[] headers = {
-            "X-Forwarded-For",
-            "Proxy-Client-IP",
-            "WL-Proxy-Client-IP",
-            "HTTP_X_FORWARDED_FOR",
-            "HTTP_X_FORWARDED",
-            "HTTP_X_CLUSTER_CLIENT_IP",
-            "HTTP_CLIENT_IP",
-            "HTTP_FORWARDED_FOR",
-            "HTTP_FORWARDED",
-            "HTTP_VIA",
-            "REMOTE_ADDR"
-        };
-
-        for (String header : headers) {
-            String ip = request.getHeader(header);
-            if (ip != null && !ip.isEmpty() && !"unknown".equalsIgnoreCase(ip)) {
-                return ip.split(",")[0].trim();
-            }
-        }
-
-        return request.getRemoteAddr();
-    }
 }
@@ -0,0 +1,55 @@
+package com.yarago.auth.controller;
+
+import com.yarago.auth.security.JwtUtil;
+import com.yarago.auth.security.RoleBitmap;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * JWKS Controller
+ * Publishes the public token signing keys and the role bitmap so other services verify
+ * and decode access tokens locally
+ */
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "JWKS", description = "Public keys for local token verification")
+public class JwksController {
+
+    private final JwtUtil jwtUtil;
+    private final RoleBitmap roleBitmap;
+
+    @Value("${jwt.signing.jwks-max-age:300}")
+    private long jwksMaxAgeSeconds;
+
+    /**
+     * JSON Web Key Set
+     * Uses the RFC 7517 document format rather than the success/data envelope so standard JWT libraries can consume it
+     */
+    @GetMapping("/.well-known/jwks.json")
+    @Operation(summary = "JWKS", description = "Public keys used to sign access tokens")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(Duration.ofSeconds(jwksMaxAgeSeconds)).cachePublic())
+            .body(Map.of("keys", jwtUtil.getPublicJwks()));
+    }
+
+    /**
+     * Bit-to-role mapping for the compact rb claim
+     */
+    @GetMapping("/.well-known/role-bitmap.json")
+    @Operation(summary = "Role Bitmap", description = "Mapping used to decode compact role claims")
+    public ResponseEntity<Map<String, Object>> roleBitmap() {
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(Duration.ofSeconds(jwksMaxAgeSeconds)).cachePublic())
+            .body(roleBitmap.describe());
+    }
+}
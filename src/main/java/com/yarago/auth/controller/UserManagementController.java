@@ -3,6 +3,7 @@ package com.yarago.auth.controller;
 import com.yarago.auth.dto.CreateUserRequest;
 import com.yarago.auth.dto.UpdateUserRequest;
 import com.yarago.auth.dto.UserDTO;
+import com.yarago.auth.dto.UserPage;
 import com.yarago.auth.entity.Role;
 import com.yarago.auth.service.UserManagementService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -31,17 +32,26 @@ public class UserManagementController {
     private final UserManagementService userManagementService;
 
     /**
-     * Get all users
+     * List users a page at a time
+     * Pass nextCursor from the previous response as cursor to fetch the following page
      */
     @GetMapping("/users")
     @PreAuthorize("hasRole('ADMIN')")
-    @Operation(summary = "Get All Users", description = "Get list of all users (Admin only)")
-    public ResponseEntity<Map<String, Object>> getAllUsers() {
-        List<UserDTO> users = userManagementService.getAllUsers();
+    @Operation(summary = "List Users", description = "List users by page with optional filters (Admin only)")
+    public ResponseEntity<Map<String, Object>> listUsers(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) Long branchId,
+            @RequestParam(required = false) String department,
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) Boolean locked) {
+        UserPage page = userManagementService.listUsers(cursor, size, branchId, department, role, active, locked);
 
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
-        result.put("data", users);
+        result.put("data", page.getUsers());
+        result.put("nextCursor", page.getNextCursor());
 
         return ResponseEntity.ok(result);
     }
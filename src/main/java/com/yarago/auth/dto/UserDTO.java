@@ -32,4 +32,14 @@ public class UserDTO {
     private Boolean accountLocked;
     private LocalDateTime lastLoginAt;
     private LocalDateTime createdAt;
+
+    /**
+     * Row of a user listing query, roles are filled in afterwards
+     */
+    public UserDTO(Long id, String username, String email, String firstName, String lastName, String phoneNumber,
+                   String designation, String department, String employeeId, Long branchId, Boolean active,
+                   Boolean accountLocked, LocalDateTime lastLoginAt, LocalDateTime createdAt) {
+        this(id, username, email, firstName, lastName, phoneNumber, designation, department, employeeId,
+            null, branchId, null, active, accountLocked, lastLoginAt, createdAt);
+    }
 }
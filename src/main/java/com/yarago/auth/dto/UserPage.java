@@ -0,0 +1,21 @@
+package com.yarago.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a user listing
+ * nextCursor is the id to pass as the next page's cursor, null on the last page
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserPage {
+    private List<UserDTO> users;
+    private Long nextCursor;
+}
@@ -0,0 +1,27 @@
+package com.yarago.auth.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Token validity epoch of a deleted user
+ * Outlives the users row so nodes that restart keep rejecting the user's access tokens until they expire
+ */
+@Entity
+@Table(name = "deleted_user_token_epochs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeletedUserTokenEpoch {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "tokens_not_before", nullable = false)
+    private LocalDateTime tokensNotBefore;
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * RefreshToken entity for JWT token management
@@ -13,7 +14,6 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "refresh_tokens", indexes = {
-    @Index(name = "idx_token", columnList = "token"),
     @Index(name = "idx_user_id", columnList = "user_id"),
     @Index(name = "idx_expires_at", columnList = "expires_at")
 })
@@ -26,8 +26,23 @@ public class RefreshToken {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, unique = true, length = 500)
-    private String token;
+    /**
+     * SHA-256 of the refresh token, the token itself is never stored
+     */
+    @Column(name = "token_hash", nullable = false, unique = true, length = 32)
+    private byte[] tokenHash;
+
+    /**
+     * Token family started at login, each refresh rotates to the next generation of the same family
+     */
+    @Column(name = "family_id", nullable = false, unique = true)
+    private UUID familyId;
+
+    @Column(nullable = false)
+    private Integer generation = 0;
+
+    @Column(name = "rotated_at")
+    private LocalDateTime rotatedAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
@@ -80,6 +80,10 @@ public class User {
     @Column(name = "password_changed_at")
     private LocalDateTime passwordChangedAt;
 
+    // Written only by UserRepository.advanceTokensNotBefore, so entity saves never move it back
+    @Column(name = "tokens_not_before", insertable = false, updatable = false)
+    private LocalDateTime tokensNotBefore;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
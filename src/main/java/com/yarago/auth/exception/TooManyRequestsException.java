@@ -0,0 +1,18 @@
+package com.yarago.auth.exception;
+
+import lombok.Getter;
+
+/**
+ * Request rejected because a bounded resource is saturated
+ * Mapped to 429 Too Many Requests with a Retry-After header
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,27 @@
+package com.yarago.auth.repository;
+
+import com.yarago.auth.entity.DeletedUserTokenEpoch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for token validity epochs of deleted users
+ */
+@Repository
+public interface DeletedUserTokenEpochRepository extends JpaRepository<DeletedUserTokenEpoch, Long> {
+
+    List<DeletedUserTokenEpoch> findByTokensNotBeforeAfter(LocalDateTime since);
+
+    /**
+     * Drop epochs every token they guard has outlived
+     */
+    @Modifying
+    @Query("DELETE FROM DeletedUserTokenEpoch e WHERE e.tokensNotBefore < :cutoff")
+    int deleteExpired(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Repository for RefreshToken entity operations
@@ -18,21 +19,65 @@ import java.util.Optional;
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-    Optional<RefreshToken> findByToken(String token);
+    /**
+     * Session with its user and roles in one statement, for refresh
+     */
+    @Query("SELECT rt FROM RefreshToken rt JOIN FETCH rt.user u LEFT JOIN FETCH u.roles WHERE rt.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHash(@Param("tokenHash") byte[] tokenHash);
+
+    /**
+     * Session with its user and roles in one statement, for refresh
+     */
+    @Query("SELECT rt FROM RefreshToken rt JOIN FETCH rt.user u LEFT JOIN FETCH u.roles WHERE rt.familyId = :familyId")
+    Optional<RefreshToken> findByFamilyId(@Param("familyId") UUID familyId);
+
+    /**
+     * Advance a live family from the presented generation to the next, 0 when another request got there first
+     */
+    @Modifying
+    @Query(value = "UPDATE refresh_tokens SET generation = generation + 1, token_hash = :tokenHash, rotated_at = :now " +
+                   "WHERE family_id = :familyId AND generation = :generation " +
+                   "AND revoked = false AND expires_at > :now", nativeQuery = true)
+    int rotate(@Param("familyId") UUID familyId,
+               @Param("generation") int generation,
+               @Param("tokenHash") byte[] tokenHash,
+               @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.revoked = true, rt.revokedAt = :now WHERE rt.familyId = :familyId AND rt.revoked = false")
+    int revokeFamily(@Param("familyId") UUID familyId, @Param("now") LocalDateTime now);
 
     List<RefreshToken> findByUser(User user);
 
     @Query("SELECT rt FROM RefreshToken rt WHERE rt.user = :user AND rt.revoked = false AND rt.expiresAt > :now")
     List<RefreshToken> findValidTokensByUser(@Param("user") User user, @Param("now") LocalDateTime now);
 
+    /**
+     * Revoke the user's live sessions, rows already revoked or expired are left untouched
+     */
     @Modifying
-    @Query("UPDATE RefreshToken rt SET rt.revoked = true, rt.revokedAt = :revokedAt WHERE rt.user = :user")
-    void revokeAllUserTokens(@Param("user") User user, @Param("revokedAt") LocalDateTime revokedAt);
+    @Query("UPDATE RefreshToken rt SET rt.revoked = true, rt.revokedAt = :revokedAt " +
+           "WHERE rt.user.id = :userId AND rt.revoked = false AND rt.expiresAt > :revokedAt")
+    void revokeAllUserTokens(@Param("userId") Long userId, @Param("revokedAt") LocalDateTime revokedAt);
 
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :expiryDate")
     void deleteExpiredTokens(@Param("expiryDate") LocalDateTime expiryDate);
 
-    @Query("SELECT COUNT(rt) FROM RefreshToken rt WHERE rt.user = :user AND rt.revoked = false AND rt.expiresAt > :now")
-    long countValidTokensByUser(@Param("user") User user, @Param("now") LocalDateTime now);
+    /**
+     * Revoke the user's oldest live sessions beyond the newest keep, counting and revoking in one statement
+     * Reads only the user's unrevoked rows through idx_refresh_tokens_user_live
+     */
+    @Modifying
+    @Query(value = "UPDATE refresh_tokens SET revoked = true, revoked_at = :now " +
+                   "WHERE user_id = :userId AND revoked = false AND (id, expires_at) IN (" +
+                   "SELECT id, expires_at FROM refresh_tokens " +
+                   "WHERE user_id = :userId AND revoked = false AND expires_at > :now " +
+                   "ORDER BY created_at DESC, id DESC OFFSET :keep)", nativeQuery = true)
+    int revokeOldestSessionsBeyond(@Param("userId") Long userId,
+                                   @Param("keep") int keep,
+                                   @Param("now") LocalDateTime now);
+
+    @Query("SELECT COUNT(rt) FROM RefreshToken rt WHERE rt.user.id = :userId AND rt.revoked = false AND rt.expiresAt > :now")
+    long countValidTokensByUser(@Param("userId") Long userId, @Param("now") LocalDateTime now);
 }
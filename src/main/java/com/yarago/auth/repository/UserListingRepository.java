@@ -0,0 +1,18 @@
+package com.yarago.auth.repository;
+
+import com.yarago.auth.dto.UserDTO;
+
+import java.util.List;
+
+/**
+ * User listing queries built from only the filters a request sets
+ */
+public interface UserListingRepository {
+
+    /**
+     * One keyset page of users after the cursor id, as rows without roles
+     * Null filters are left out of the statement, so each combination is planned on its own index
+     */
+    List<UserDTO> findUserRowsAfter(Long afterId, Long branchId, String department, String role,
+                                    Boolean active, Boolean locked, int limit);
+}
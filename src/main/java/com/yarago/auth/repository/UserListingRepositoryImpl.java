@@ -0,0 +1,68 @@
+package com.yarago.auth.repository;
+
+import com.yarago.auth.dto.UserDTO;
+import com.yarago.auth.entity.Role;
+import com.yarago.auth.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria implementation of the user listing
+ * A catch-all (:x IS NULL OR ...) query shares one generic plan across every filter combination,
+ * building only the set predicates lets a filtered page walk its (filter, id) index
+ */
+public class UserListingRepositoryImpl implements UserListingRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserDTO> findUserRowsAfter(Long afterId, Long branchId, String department, String role,
+                                           Boolean active, Boolean locked, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserDTO> query = cb.createQuery(UserDTO.class);
+        Root<User> user = query.from(User.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.greaterThan(user.<Long>get("id"), afterId));
+        if (branchId != null) {
+            predicates.add(cb.equal(user.get("branchId"), branchId));
+        }
+        if (department != null) {
+            predicates.add(cb.equal(user.get("department"), department));
+        }
+        if (active != null) {
+            predicates.add(cb.equal(user.get("active"), active));
+        }
+        if (locked != null) {
+            predicates.add(cb.equal(user.get("accountLocked"), locked));
+        }
+        if (role != null) {
+            Subquery<Integer> hasRole = query.subquery(Integer.class);
+            Join<User, Role> roles = hasRole.correlate(user).join("roles");
+            hasRole.select(cb.literal(1)).where(cb.equal(roles.get("name"), role));
+            predicates.add(cb.exists(hasRole));
+        }
+
+        query.select(cb.construct(UserDTO.class,
+                user.get("id"), user.get("username"), user.get("email"), user.get("firstName"),
+                user.get("lastName"), user.get("phoneNumber"), user.get("designation"), user.get("department"),
+                user.get("employeeId"), user.get("branchId"), user.get("active"), user.get("accountLocked"),
+                user.get("lastLoginAt"), user.get("createdAt")))
+            .where(predicates.toArray(new Predicate[0]))
+            .orderBy(cb.asc(user.get("id")));
+
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+}
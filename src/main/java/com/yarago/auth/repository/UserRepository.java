@@ -2,10 +2,14 @@ package com.yarago.auth.repository;
 
 import com.yarago.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,7 +17,7 @@ import java.util.Optional;
  * Repository for User entity operations
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserListingRepository {
 
     Optional<User> findByUsername(String username);
 
@@ -25,6 +29,12 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.username = :identifier OR u.email = :identifier")
     Optional<User> findByUsernameOrEmail(@Param("identifier") String identifier);
 
+    /**
+     * Load a user with roles for login in a single statement
+     */
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = :identifier OR u.email = :identifier")
+    Optional<User> findForLogin(@Param("identifier") String identifier);
+
     Optional<User> findByEmployeeId(String employeeId);
 
     boolean existsByUsername(String username);
@@ -49,4 +59,59 @@ public interface UserRepository extends JpaRepository<User, Long> {
            "OR LOWER(u.username) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
            "OR LOWER(u.email) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     List<User> searchUsers(@Param("searchTerm") String searchTerm);
+
+    /**
+     * Lock an account that crossed the failed login threshold, returns 0 when it was already locked
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.accountLocked = true, u.failedLoginAttempts = :attempts " +
+           "WHERE u.id = :userId AND u.accountLocked = false")
+    int lockAccount(@Param("userId") Long userId, @Param("attempts") int attempts);
+
+    /**
+     * (user id, role name) pairs for a batch of users
+     */
+    @Query("SELECT u.id, r.name FROM User u JOIN u.roles r WHERE u.id IN :userIds")
+    List<Object[]> findRoleNamesByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * User and roles in one statement
+     */
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id = :id")
+    Optional<User> findWithRolesById(@Param("id") Long id);
+
+    /**
+     * Swap a password hash for its rehash, only if the stored hash is still the expected one
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.username = :username AND u.password = :oldPassword")
+    int replacePasswordHash(@Param("username") String username,
+                            @Param("oldPassword") String oldPassword,
+                            @Param("newPassword") String newPassword);
+
+    /**
+     * Move a user's token validity epoch forward, never back
+     * Joins the caller's transaction, or runs in its own when called outside one
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.tokensNotBefore = :notBefore " +
+           "WHERE u.id = :userId AND (u.tokensNotBefore IS NULL OR u.tokensNotBefore < :notBefore)")
+    int advanceTokensNotBefore(@Param("userId") Long userId, @Param("notBefore") LocalDateTime notBefore);
+
+    /**
+     * Users whose token validity epoch moved recently
+     * Used to seed token validity epochs without loading full users and roles
+     */
+    @Query("SELECT u.id AS id, u.tokensNotBefore AS tokensNotBefore FROM User u WHERE u.tokensNotBefore > :since")
+    List<TokenEpoch> findTokenEpochsSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Projection of the epoch before which a user's issued tokens are no longer acceptable
+     */
+    interface TokenEpoch {
+        Long getId();
+
+        LocalDateTime getTokensNotBefore();
+    }
 }
@@ -0,0 +1,362 @@
+package com.yarago.auth.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Denylist of revoked access tokens, keyed by a 64-bit digest of the jti claim
+ * An open-addressing table of (key, exp) slots in a memory-mapped file, so revocations survive a
+ * restart without a database reload. Readers are lock-free and allocation-free, guarded by a
+ * sequence counter that the single writer makes odd while it mutates. Entries stop matching at the
+ * token's exp and their slots are reused in place or reclaimed when the table is compacted. Compaction
+ * runs only once it can bring the table down to half full, so a burst of live revocations does not
+ * rewrite the table on every put. Revocations are broadcast on a Redis channel so every node denies the token
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AccessTokenDenylist {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final long MAGIC = 0x594A54494400_0001L;
+    private static final int HEADER_BYTES = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SEQUENCE_OFFSET = 16;
+    private static final int OCCUPIED_OFFSET = 24;
+    private static final int SLOT_BYTES = 16;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.token-denylist.file:./data/token-denylist.bin}")
+    private Path file;
+
+    @Value("${auth.token-denylist.capacity:65536}")
+    private int requestedCapacity;
+
+    @Value("${auth.token-denylist.channel:auth:token-denylist}")
+    private String channel;
+
+    private FileChannel fileChannel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int mask;
+    private volatile boolean dirty;
+
+    // Guarded by this: epoch second before which compacting would leave the table above half full
+    private long nextCompactionAt;
+    private boolean fullLogged;
+
+    @PostConstruct
+    void open() throws IOException {
+        capacity = Integer.highestOneBit(Math.max(1024, requestedCapacity - 1)) << 1;
+        mask = capacity - 1;
+        long size = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean reuse = fileChannel.size() == size;
+        buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.nativeOrder());
+
+        if (reuse && buffer.getLong(MAGIC_OFFSET) == MAGIC && buffer.getLong(CAPACITY_OFFSET) == capacity) {
+            // A writer interrupted by a crash leaves the sequence odd, compacting rewrites every slot
+            if ((buffer.getLong(SEQUENCE_OFFSET) & 1) != 0) {
+                buffer.putLong(SEQUENCE_OFFSET, 0);
+                compact(nowSeconds());
+            }
+            log.info("Access token denylist loaded from {} with {} occupied slots", file, buffer.getLong(OCCUPIED_OFFSET));
+        } else {
+            for (long offset = 0; offset < size; offset += Long.BYTES) {
+                buffer.putLong((int) offset, 0);
+            }
+            buffer.putLong(CAPACITY_OFFSET, capacity);
+            buffer.putLong(MAGIC_OFFSET, MAGIC);
+            buffer.force();
+            log.info("Access token denylist created at {} with {} slots", file, capacity);
+        }
+
+        listenerContainer.addMessageListener(this::onRevoked, new ChannelTopic(channel));
+        Gauge.builder("auth.token.denylist.entries", this, denylist -> denylist.buffer.getLong(OCCUPIED_OFFSET))
+            .description("Occupied slots of the access token denylist, expired ones included until compaction")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Digest of a jti, 0 is reserved for empty slots
+     */
+    public static long key(CharSequence jti) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < jti.length(); i++) {
+            h ^= jti.charAt(i) & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return finish(h);
+    }
+
+    /**
+     * Digest of a jti held as ASCII bytes[from, to), equal to key(CharSequence) for the same characters
+     */
+    public static long key(byte[] bytes, int from, int to) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = from; i < to; i++) {
+            h ^= bytes[i] & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return finish(h);
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * Whether the token was revoked, tokens without a jti never are
+     */
+    public boolean isRevoked(VerifiedToken token) {
+        long key = token.getJtiKey();
+        if (key == 0) {
+            return false;
+        }
+        long now = nowSeconds();
+        while (true) {
+            long sequence = (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET);
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            boolean revoked = probe(key, now);
+            VarHandle.acquireFence();
+            if ((long) LONGS.getOpaque(buffer, SEQUENCE_OFFSET) == sequence) {
+                return revoked;
+            }
+        }
+    }
+
+    /**
+     * Deny the token on every node until it expires
+     */
+    public void revoke(VerifiedToken token) {
+        long key = token.getJtiKey();
+        if (key == 0) {
+            return;
+        }
+        long expiresAt = token.getExpiration().getTime() / 1000;
+        put(key, expiresAt);
+        try {
+            redisTemplate.convertAndSend(channel, Long.toHexString(key) + ':' + expiresAt);
+        } catch (DataAccessException e) {
+            log.warn("Could not broadcast access token revocation, other nodes accept the token until it expires: {}",
+                e.getMessage());
+        }
+    }
+
+    private void onRevoked(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.US_ASCII);
+        int separator = body.indexOf(':');
+        try {
+            put(Long.parseUnsignedLong(body, 0, separator, 16), Long.parseLong(body, separator + 1, body.length(), 10));
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            log.warn("Ignoring malformed access token revocation: {}", body);
+        }
+    }
+
+    private boolean probe(long key, long now) {
+        for (int i = 0, slot = slotFor(key); i < capacity; i++, slot = (slot + 1) & mask) {
+            int offset = offset(slot);
+            long slotKey = buffer.getLong(offset);
+            if (slotKey == 0) {
+                return false;
+            }
+            if (slotKey == key) {
+                return buffer.getLong(offset + 8) > now;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void put(long key, long expiresAt) {
+        long now = nowSeconds();
+        if (expiresAt <= now) {
+            return;
+        }
+        if (buffer.getLong(OCCUPIED_OFFSET) >= capacity - (capacity >> 2) && now >= nextCompactionAt) {
+            compact(now);
+        }
+
+        // The only writer probes outside the write section, readers wait for the stores alone
+        int target = -1;
+        boolean empty = false;
+        for (int i = 0, slot = slotFor(key); i < capacity; i++, slot = (slot + 1) & mask) {
+            int offset = offset(slot);
+            long slotKey = buffer.getLong(offset);
+            if (slotKey == key) {
+                if (buffer.getLong(offset + 8) < expiresAt) {
+                    beginWrite();
+                    try {
+                        buffer.putLong(offset + 8, expiresAt);
+                    } finally {
+                        endWrite();
+                    }
+                }
+                return;
+            }
+            if (slotKey == 0) {
+                if (target < 0) {
+                    target = offset;
+                    empty = true;
+                }
+                break;
+            }
+            if (target < 0 && buffer.getLong(offset + 8) <= now) {
+                target = offset;
+            }
+        }
+        if (target < 0) {
+            if (!fullLogged) {
+                fullLogged = true;
+                log.warn("Access token denylist is full, revocations are not recorded until entries expire at {}",
+                    nextCompactionAt);
+            }
+            return;
+        }
+
+        beginWrite();
+        try {
+            if (empty) {
+                buffer.putLong(OCCUPIED_OFFSET, buffer.getLong(OCCUPIED_OFFSET) + 1);
+            }
+            buffer.putLong(target + 8, expiresAt);
+            buffer.putLong(target, key);
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Rehash the live entries into a cleared table, dropping expired ones
+     * When more than half the slots stay live, the next compaction waits for enough of them to expire
+     */
+    private synchronized void compact(long now) {
+        long[] keys = new long[capacity];
+        long[] expiries = new long[capacity];
+        int live = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offset(slot);
+            long slotKey = buffer.getLong(offset);
+            long expiresAt = buffer.getLong(offset + 8);
+            if (slotKey != 0 && expiresAt > now) {
+                keys[live] = slotKey;
+                expiries[live++] = expiresAt;
+            }
+        }
+
+        beginWrite();
+        try {
+            for (int slot = 0; slot < capacity; slot++) {
+                buffer.putLong(offset(slot), 0);
+                buffer.putLong(offset(slot) + 8, 0);
+            }
+            for (int i = 0; i < live; i++) {
+                int slot = slotFor(keys[i]);
+                while (buffer.getLong(offset(slot)) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                buffer.putLong(offset(slot) + 8, expiries[i]);
+                buffer.putLong(offset(slot), keys[i]);
+            }
+            buffer.putLong(OCCUPIED_OFFSET, live);
+        } finally {
+            endWrite();
+        }
+
+        fullLogged = false;
+        int halfFull = capacity >> 1;
+        if (live > halfFull) {
+            // Past the (live - halfFull)-th earliest expiry at most halfFull entries are live
+            long[] sorted = Arrays.copyOf(expiries, live);
+            Arrays.sort(sorted);
+            nextCompactionAt = sorted[live - halfFull - 1];
+            log.warn("Access token denylist holds {} live revocations in {} slots, next compaction at {}",
+                live, capacity, nextCompactionAt);
+        } else {
+            nextCompactionAt = 0;
+        }
+    }
+
+    private void beginWrite() {
+        LONGS.setOpaque(buffer, SEQUENCE_OFFSET, buffer.getLong(SEQUENCE_OFFSET) + 1);
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        LONGS.setRelease(buffer, SEQUENCE_OFFSET, buffer.getLong(SEQUENCE_OFFSET) + 1);
+        dirty = true;
+    }
+
+    /**
+     * Push dirty pages to disk, the page cache already keeps them across a process restart
+     */
+    @Scheduled(fixedDelayString = "${auth.token-denylist.force-interval:10s}")
+    public void force() {
+        if (dirty) {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        force();
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int slotFor(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,49 @@
+package com.yarago.auth.security;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+
+/**
+ * Principal built from the claims of a verified access token
+ * Used in stateless mode so authenticated requests never load the user from the database
+ */
+@Getter
+@RequiredArgsConstructor
+public class AuthenticatedUser implements UserDetails {
+
+    private final Long userId;
+    private final String username;
+    private final Long branchId;
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    @Override
+    @JsonIgnore
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
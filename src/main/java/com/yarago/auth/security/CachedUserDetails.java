@@ -0,0 +1,43 @@
+package com.yarago.auth.security;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of the fields CustomUserDetailsService resolves for a user
+ * Stored as JSON in Redis and shared by reference in the local cache, so every lookup
+ * builds a fresh UserDetails that Spring Security may erase credentials on.
+ * The password hash is deliberately absent: login reads it from the database, and keeping it out
+ * of the snapshot keeps hashes out of the shared cache tier
+ */
+@Value
+@Builder
+@Jacksonized
+public class CachedUserDetails {
+
+    Long userId;
+    String username;
+    String email;
+    boolean active;
+    boolean accountLocked;
+    List<String> authorities;
+
+    public UserDetails toUserDetails() {
+        return new User(
+            username,
+            "", // no credentials, the hash is never cached
+            active,
+            true, // accountNonExpired
+            true, // credentialsNonExpired
+            !accountLocked, // accountNonLocked
+            authorities.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList()
+        );
+    }
+}
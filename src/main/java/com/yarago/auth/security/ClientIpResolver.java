@@ -0,0 +1,71 @@
+package com.yarago.auth.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Resolve the client IP address of a request
+ * X-Forwarded-For is honoured only when the connection comes from a configured trusted proxy, and then
+ * read right to left: the first hop that is not a trusted proxy is the client. Hops further left were
+ * supplied by the client itself and could otherwise pick its own rate limit key
+ */
+@Component
+public class ClientIpResolver {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    @Value("${auth.client-ip.trusted-proxies:}")
+    private List<String> trustedProxies;
+
+    private List<IpAddressMatcher> trustedProxyMatchers = List.of();
+
+    @PostConstruct
+    void initTrustedProxies() {
+        trustedProxyMatchers = trustedProxies.stream()
+            .map(String::trim)
+            .filter(cidr -> !cidr.isEmpty())
+            .map(IpAddressMatcher::new)
+            .toList();
+    }
+
+    /**
+     * Extract client IP address
+     */
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String forwardedFor = request.getHeader(FORWARDED_FOR);
+        if (forwardedFor == null || forwardedFor.isBlank() || !isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+
+        String[] hops = forwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !isTrustedProxy(hop)) {
+                return hop;
+            }
+        }
+        // Every hop is one of our proxies, the left-most is the closest we get to the client
+        String first = hops.length > 0 ? hops[0].trim() : "";
+        return first.isEmpty() ? remoteAddr : first;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        for (IpAddressMatcher matcher : trustedProxyMatchers) {
+            try {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                // Not an IP literal, never a proxy of ours
+                return false;
+            }
+        }
+        return false;
+    }
+}
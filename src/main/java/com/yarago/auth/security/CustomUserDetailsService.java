@@ -1,61 +1,69 @@
 package com.yarago.auth.security;
 
+import com.yarago.auth.entity.Role;
 import com.yarago.auth.entity.User;
 import com.yarago.auth.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.List;
 
 /**
  * Custom UserDetailsService for Spring Security
  * Loads user details from database for authentication
+ * Resolved users are served from a two-tier cache that is evicted whenever account state changes.
+ * Login does not go through here, AuthService authenticates and rehashes against the user it loads
  */
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
 
+    // Not transactional: cache hits must not check out a pooled connection, roles are fetched eagerly
     @Override
-    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String usernameOrEmail) throws UsernameNotFoundException {
         // Support login with both username and email
-        User user = userRepository.findByUsernameOrEmail(usernameOrEmail)
-            .orElseThrow(() -> new UsernameNotFoundException("User not found: " + usernameOrEmail));
+        CachedUserDetails user = userDetailsCache.get(usernameOrEmail, this::loadFromDatabase);
 
-        if (!user.getActive()) {
+        if (!user.isActive()) {
             throw new UsernameNotFoundException("User account is inactive: " + usernameOrEmail);
         }
 
-        if (user.getAccountLocked()) {
+        if (user.isAccountLocked()) {
             throw new UsernameNotFoundException("User account is locked: " + usernameOrEmail);
         }
 
-        return new org.springframework.security.core.userdetails.User(
-            user.getUsername(),
-            user.getPassword(),
-            user.getActive(),
-            true, // accountNonExpired
-            true, // credentialsNonExpired
-            !user.getAccountLocked(), // accountNonLocked
-            getAuthorities(user)
-        );
+        return user.toUserDetails();
+    }
+
+    /**
+     * Resolve user state and authorities from the database
+     */
+    private CachedUserDetails loadFromDatabase(String usernameOrEmail) {
+        User user = userRepository.findByUsernameOrEmail(usernameOrEmail)
+            .orElseThrow(() -> new UsernameNotFoundException("User not found: " + usernameOrEmail));
+
+        return CachedUserDetails.builder()
+            .userId(user.getId())
+            .username(user.getUsername())
+            .email(user.getEmail())
+            .active(user.getActive())
+            .accountLocked(user.getAccountLocked())
+            .authorities(getAuthorities(user))
+            .build();
     }
 
     /**
-     * Convert user roles to Spring Security authorities
+     * Convert user roles to Spring Security authority names
      */
-    private Collection<? extends GrantedAuthority> getAuthorities(User user) {
+    private List<String> getAuthorities(User user) {
         return user.getRoles().stream()
-            .map(role -> new SimpleGrantedAuthority(role.getName()))
-            .collect(Collectors.toList());
+            .map(Role::getName)
+            .toList();
     }
 }
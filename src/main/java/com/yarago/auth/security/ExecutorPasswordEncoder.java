@@ -0,0 +1,30 @@
+package com.yarago.auth.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * PasswordEncoder that runs the delegate's encode and matches on the password hashing executor
+ * Callers keep the PasswordEncoder contract and see TooManyRequestsException under overload
+ */
+@RequiredArgsConstructor
+public class ExecutorPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
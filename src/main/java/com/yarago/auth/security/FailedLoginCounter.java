@@ -0,0 +1,18 @@
+package com.yarago.auth.security;
+
+/**
+ * Sliding-window count of failed logins per user
+ * Implementations count atomically, so the caller that sees the threshold reached is the one that locks
+ */
+public interface FailedLoginCounter {
+
+    /**
+     * Record a failed login and return the number of failures inside the window, this one included
+     */
+    int recordFailure(Long userId);
+
+    /**
+     * Forget the user's failures after a successful login, unlock or password reset
+     */
+    void reset(Long userId);
+}
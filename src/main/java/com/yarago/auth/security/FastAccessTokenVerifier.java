@@ -0,0 +1,519 @@
+package com.yarago.auth.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Allocation-lean HS512 verifier for the fixed-shape tokens minted by JwtUtil
+ * Decodes Base64URL into per-thread buffers, verifies with a per-thread Mac, compares the signature
+ * in constant time and reads only the claims the service uses with a minimal JSON scanner.
+ * Returns null for anything it does not fully understand so the caller falls back to JJWT
+ */
+@Component
+@RequiredArgsConstructor
+public class FastAccessTokenVerifier {
+
+    private static final int MAX_TOKEN_LENGTH = 4096;
+    private static final int HS512_LENGTH = 64;
+    private static final int MAX_ROLES = 32;
+    private static final int MAX_SYMBOLS = 256;
+    private static final String HMAC_SHA512 = "HmacSHA512";
+
+    private static final byte[] ALG = ascii("alg");
+    private static final byte[] KID = ascii("kid");
+    private static final byte[] TYP = ascii("typ");
+    private static final byte[] HS512 = ascii("HS512");
+    private static final byte[] SUB = ascii("sub");
+    private static final byte[] EXP = ascii("exp");
+    private static final byte[] IAT = ascii("iat");
+    private static final byte[] JTI = ascii("jti");
+    private static final byte[] USER_ID = ascii(JwtUtil.CLAIM_USER_ID);
+    private static final byte[] BRANCH_ID = ascii(JwtUtil.CLAIM_BRANCH_ID);
+    private static final byte[] ROLES = ascii(JwtUtil.CLAIM_ROLES);
+    private static final byte[] ROLE_BITMAP = ascii(JwtUtil.CLAIM_ROLE_BITMAP);
+    private static final byte[] ROLE_BITMAP_VERSION = ascii(JwtUtil.CLAIM_ROLE_BITMAP_VERSION);
+    private static final byte[] TYPE = ascii(JwtUtil.CLAIM_TYPE);
+
+    private static final int[] BASE64URL = new int[128];
+
+    static {
+        Arrays.fill(BASE64URL, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private final RoleBitmap roleBitmap;
+
+    private final ThreadLocal<ThreadState> threadState = ThreadLocal.withInitial(ThreadState::new);
+    private final SymbolTable symbols = new SymbolTable();
+    private final RoleListTable roleLists = new RoleListTable();
+
+    /**
+     * Verify an HS512 token against the HMAC keys of the ring
+     * Returns null when the token has another shape, algorithm or claim set, or fails any check
+     */
+    public VerifiedToken verify(String token, JwtKeyRing ring) {
+        int length = token.length();
+        if (length > MAX_TOKEN_LENGTH) {
+            return null;
+        }
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot > 0 ? token.indexOf('.', firstDot + 1) : -1;
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+
+        ThreadState state = threadState.get();
+        state.bind(ring);
+
+        int headerLength = decodeBase64Url(token, 0, firstDot, state.json);
+        if (headerLength < 0) {
+            return null;
+        }
+        Mac mac = readHeader(state, headerLength);
+        if (mac == null) {
+            return null;
+        }
+
+        int signatureLength = decodeBase64Url(token, secondDot + 1, length, state.signature);
+        if (signatureLength != HS512_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < secondDot; i++) {
+            state.input[i] = (byte) token.charAt(i);
+        }
+        mac.update(state.input, 0, secondDot);
+        try {
+            mac.doFinal(state.expected, 0);
+        } catch (ShortBufferException e) {
+            return null;
+        }
+        int difference = 0;
+        for (int i = 0; i < HS512_LENGTH; i++) {
+            difference |= state.expected[i] ^ state.signature[i];
+        }
+        if (difference != 0) {
+            return null;
+        }
+
+        int payloadLength = decodeBase64Url(token, firstDot + 1, secondDot, state.json);
+        if (payloadLength < 0) {
+            return null;
+        }
+        return readPayload(state, payloadLength);
+    }
+
+    /**
+     * Accept only {"alg":"HS512"} with optional kid and typ, and resolve the Mac for the key id
+     */
+    private Mac readHeader(ThreadState state, int length) {
+        state.reset(length);
+        if (!state.consume('{')) {
+            return null;
+        }
+        boolean hs512 = false;
+        Mac mac = state.legacyMac;
+        for (boolean first = true; state.nextMember(first); first = false) {
+            int keyStart = state.start;
+            int keyEnd = state.end;
+            if (!state.consume(':') || !state.readString()) {
+                return null;
+            }
+            if (state.keyIs(keyStart, keyEnd, ALG)) {
+                hs512 = state.keyIs(state.start, state.end, HS512);
+            } else if (state.keyIs(keyStart, keyEnd, KID)) {
+                mac = state.macFor(state.start, state.end);
+            } else if (!state.keyIs(keyStart, keyEnd, TYP)) {
+                return null;
+            }
+        }
+        return hs512 && state.finished() ? mac : null;
+    }
+
+    /**
+     * Read sub, exp, iat, jti, userId, branchId, roles or rb/rv and type, any other claim falls back to JJWT
+     */
+    private VerifiedToken readPayload(ThreadState state, int length) {
+        state.reset(length);
+        if (!state.consume('{')) {
+            return null;
+        }
+        String subject = null;
+        long issuedAt = -1;
+        long expiration = -1;
+        Long userId = null;
+        Long branchId = null;
+        List<String> roles = List.of();
+        boolean hasRoleBitmap = false;
+        long roleBitmapVersion = -1;
+        String type = null;
+        long jtiKey = 0;
+
+        for (boolean first = true; state.nextMember(first); first = false) {
+            int keyStart = state.start;
+            int keyEnd = state.end;
+            if (!state.consume(':')) {
+                return null;
+            }
+            if (state.keyIs(keyStart, keyEnd, SUB)) {
+                if (!state.readString()) {
+                    return null;
+                }
+                subject = new String(state.json, state.start, state.end - state.start, StandardCharsets.UTF_8);
+            } else if (state.keyIs(keyStart, keyEnd, EXP)) {
+                expiration = state.readLong();
+            } else if (state.keyIs(keyStart, keyEnd, IAT)) {
+                issuedAt = state.readLong();
+            } else if (state.keyIs(keyStart, keyEnd, JTI)) {
+                // Hashed in place, the id itself is never materialized as a String
+                if (!state.readString()) {
+                    return null;
+                }
+                jtiKey = AccessTokenDenylist.key(state.json, state.start, state.end);
+            } else if (state.keyIs(keyStart, keyEnd, USER_ID)) {
+                userId = state.readNullableLong();
+            } else if (state.keyIs(keyStart, keyEnd, BRANCH_ID)) {
+                branchId = state.readNullableLong();
+            } else if (state.keyIs(keyStart, keyEnd, ROLES)) {
+                roles = readRoles(state);
+            } else if (state.keyIs(keyStart, keyEnd, ROLE_BITMAP)) {
+                roles = roleBitmap.decode(state.readLong());
+                hasRoleBitmap = true;
+            } else if (state.keyIs(keyStart, keyEnd, ROLE_BITMAP_VERSION)) {
+                roleBitmapVersion = state.readLong();
+            } else if (state.keyIs(keyStart, keyEnd, TYPE)) {
+                if (!state.readString()) {
+                    return null;
+                }
+                type = symbols.lookup(state.json, state.start, state.end);
+            } else {
+                return null;
+            }
+            if (state.failed || roles == null) {
+                return null;
+            }
+        }
+
+        if (hasRoleBitmap != (roleBitmapVersion >= 0) || (hasRoleBitmap && roleBitmapVersion != RoleBitmap.VERSION)) {
+            return null;
+        }
+        if (!state.finished() || subject == null || issuedAt < 0 || expiration < 0
+                || System.currentTimeMillis() > expiration * 1000) {
+            return null;
+        }
+        return new VerifiedToken(subject, new Date(issuedAt * 1000), new Date(expiration * 1000),
+            userId, branchId, roles, type, null, null, jtiKey);
+    }
+
+    private List<String> readRoles(ThreadState state) {
+        if (!state.consume('[')) {
+            return null;
+        }
+        int count = 0;
+        if (!state.consume(']')) {
+            do {
+                if (count == MAX_ROLES || !state.readString()) {
+                    return null;
+                }
+                state.roles[count++] = symbols.lookup(state.json, state.start, state.end);
+            } while (state.consume(','));
+            if (!state.consume(']')) {
+                return null;
+            }
+        }
+        return roleLists.lookup(state.roles, count);
+    }
+
+    /**
+     * Decode unpadded Base64URL into the destination, returns the decoded length or -1
+     */
+    private static int decodeBase64Url(String source, int from, int to, byte[] destination) {
+        int length = to - from;
+        if (length % 4 == 1) {
+            return -1;
+        }
+        int decodedLength = length / 4 * 3 + Math.max(0, length % 4 - 1);
+        if (decodedLength > destination.length) {
+            return -1;
+        }
+        int bits = 0;
+        int bitCount = 0;
+        int position = 0;
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            int value = c < 128 ? BASE64URL[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                destination[position++] = (byte) (bits >> bitCount);
+            }
+        }
+        return position;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Per-thread buffers, Macs and JSON cursor
+     */
+    private static final class ThreadState {
+
+        final byte[] input = new byte[MAX_TOKEN_LENGTH];
+        final byte[] json = new byte[MAX_TOKEN_LENGTH];
+        final byte[] signature = new byte[HS512_LENGTH];
+        final byte[] expected = new byte[HS512_LENGTH];
+        final String[] roles = new String[MAX_ROLES];
+
+        JwtKeyRing ring;
+        byte[][] keyIds = new byte[0][];
+        Mac[] macs = new Mac[0];
+        Mac legacyMac;
+
+        int position;
+        int limit;
+        int start;
+        int end;
+        boolean failed;
+
+        /**
+         * Initialise one Mac per HMAC key the first time a thread sees a key ring
+         */
+        void bind(JwtKeyRing keyRing) {
+            if (ring == keyRing) {
+                return;
+            }
+            List<byte[]> ids = new ArrayList<>();
+            List<Mac> keyMacs = new ArrayList<>();
+            for (Map.Entry<String, Key> entry : keyRing.getKeys().entrySet()) {
+                if (entry.getValue() instanceof SecretKey secretKey) {
+                    ids.add(ascii(entry.getKey()));
+                    keyMacs.add(newMac(secretKey));
+                }
+            }
+            keyIds = ids.toArray(new byte[0][]);
+            macs = keyMacs.toArray(new Mac[0]);
+            legacyMac = newMac(keyRing.getLegacyKey());
+            ring = keyRing;
+        }
+
+        private static Mac newMac(SecretKey key) {
+            try {
+                Mac mac = Mac.getInstance(HMAC_SHA512);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA512 not available", e);
+            }
+        }
+
+        Mac macFor(int from, int to) {
+            for (int i = 0; i < keyIds.length; i++) {
+                if (keyIs(from, to, keyIds[i])) {
+                    return macs[i];
+                }
+            }
+            return null;
+        }
+
+        void reset(int length) {
+            position = 0;
+            limit = length;
+            failed = false;
+        }
+
+        void skipWhitespace() {
+            while (position < limit && (json[position] == ' ' || json[position] == '\n'
+                    || json[position] == '\r' || json[position] == '\t')) {
+                position++;
+            }
+        }
+
+        boolean consume(char expected) {
+            skipWhitespace();
+            if (position < limit && json[position] == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Advance to the next object member key, false at the closing brace or on malformed input
+         */
+        boolean nextMember(boolean first) {
+            skipWhitespace();
+            if (position < limit && json[position] == '}') {
+                return false;
+            }
+            if (!first && !consume(',')) {
+                failed = true;
+                return false;
+            }
+            return readString();
+        }
+
+        boolean finished() {
+            if (failed || !consume('}')) {
+                return false;
+            }
+            skipWhitespace();
+            return position == limit;
+        }
+
+        /**
+         * Locate a string without escapes, its bytes are json[start, end)
+         */
+        boolean readString() {
+            if (!consume('"')) {
+                failed = true;
+                return false;
+            }
+            start = position;
+            while (position < limit && json[position] != '"') {
+                if (json[position] == '\\') {
+                    failed = true;
+                    return false;
+                }
+                position++;
+            }
+            if (position == limit) {
+                failed = true;
+                return false;
+            }
+            end = position++;
+            return true;
+        }
+
+        long readLong() {
+            skipWhitespace();
+            long value = 0;
+            int digits = 0;
+            while (position < limit && json[position] >= '0' && json[position] <= '9' && digits < 18) {
+                value = value * 10 + (json[position++] - '0');
+                digits++;
+            }
+            if (digits == 0 || (position < limit && (json[position] == '.' || json[position] == 'e'
+                    || json[position] == 'E' || (json[position] >= '0' && json[position] <= '9')))) {
+                failed = true;
+                return -1;
+            }
+            return value;
+        }
+
+        Long readNullableLong() {
+            skipWhitespace();
+            if (limit - position >= 4 && json[position] == 'n' && json[position + 1] == 'u'
+                    && json[position + 2] == 'l' && json[position + 3] == 'l') {
+                position += 4;
+                return null;
+            }
+            return readLong();
+        }
+
+        boolean keyIs(int from, int to, byte[] expected) {
+            if (to - from != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (json[from + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Bounded copy-on-write table of role names and token types so repeated values share one String
+     */
+    private static final class SymbolTable {
+
+        private final AtomicReference<String[]> symbols = new AtomicReference<>(new String[0]);
+
+        String lookup(byte[] bytes, int from, int to) {
+            String[] current = symbols.get();
+            for (String symbol : current) {
+                if (matches(symbol, bytes, from, to)) {
+                    return symbol;
+                }
+            }
+            String created = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            if (current.length < MAX_SYMBOLS) {
+                String[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = created;
+                symbols.compareAndSet(current, next);
+            }
+            return created;
+        }
+
+        private static boolean matches(String symbol, byte[] bytes, int from, int to) {
+            if (symbol.length() != to - from) {
+                return false;
+            }
+            for (int i = 0; i < symbol.length(); i++) {
+                if (symbol.charAt(i) != bytes[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Bounded copy-on-write table of immutable role lists, matched by identity of interned role names
+     */
+    private static final class RoleListTable {
+
+        private final AtomicReference<List<?>[]> lists = new AtomicReference<>(new List<?>[0]);
+
+        @SuppressWarnings("unchecked")
+        List<String> lookup(String[] roles, int count) {
+            List<?>[] current = lists.get();
+            for (List<?> list : current) {
+                if (matches(list, roles, count)) {
+                    return (List<String>) list;
+                }
+            }
+            List<String> created = List.of(Arrays.copyOf(roles, count));
+            if (current.length < MAX_SYMBOLS) {
+                List<?>[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = created;
+                lists.compareAndSet(current, next);
+            }
+            return created;
+        }
+
+        private static boolean matches(List<?> list, String[] roles, int count) {
+            if (list.size() != count) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                if (list.get(i) != roles[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.yarago.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-node failed login counter using a sliding window approximated from two fixed windows
+ * Each user's state is an immutable snapshot swapped by compare-and-set, so concurrent failures
+ * against one account neither block nor lose increments. Idle users are evicted after two windows
+ */
+@Component
+@ConditionalOnProperty(name = "auth.login-lockout.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryFailedLoginCounter implements FailedLoginCounter {
+
+    private final long windowMillis;
+    private final Cache<Long, AtomicReference<Window>> windows;
+
+    public InMemoryFailedLoginCounter(
+            @Value("${auth.login-lockout.window:15m}") Duration window,
+            @Value("${auth.login-lockout.max-tracked-users:100000}") long maxTrackedUsers) {
+        this.windowMillis = window.toMillis();
+        this.windows = Caffeine.newBuilder()
+            .maximumSize(maxTrackedUsers)
+            .expireAfterAccess(window.multipliedBy(2))
+            .build();
+    }
+
+    @Override
+    public int recordFailure(Long userId) {
+        long now = System.currentTimeMillis();
+        AtomicReference<Window> state = windows.get(userId, id -> new AtomicReference<>(Window.EMPTY));
+        Window updated = state.updateAndGet(window -> window.advance(now, windowMillis).increment());
+        return updated.estimate(now, windowMillis);
+    }
+
+    @Override
+    public void reset(Long userId) {
+        windows.invalidate(userId);
+    }
+
+    /**
+     * Failures in the current fixed window and the one before it
+     * The estimate weights the previous window by how much of it still overlaps the sliding window
+     */
+    private record Window(long index, int previous, int current) {
+
+        static final Window EMPTY = new Window(0, 0, 0);
+
+        Window advance(long now, long size) {
+            long nowIndex = now / size;
+            if (nowIndex == index) {
+                return this;
+            }
+            return new Window(nowIndex, nowIndex == index + 1 ? current : 0, 0);
+        }
+
+        Window increment() {
+            return new Window(index, previous, current + 1);
+        }
+
+        int estimate(long now, long size) {
+            long remaining = size - now % size;
+            return current + (int) (previous * remaining / size);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.entity.RefreshToken;
+import com.yarago.auth.repository.RefreshTokenRepository;
+import com.yarago.auth.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Refresh token families in the refresh_tokens table
+ * Each method runs in its own short transaction, or joins the caller's
+ */
+@Component
+@ConditionalOnProperty(name = "auth.refresh-token.store", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+
+    @Override
+    @Transactional
+    public void save(RefreshSession session, int maxSessions) {
+        // Make room for the new session by revoking only the oldest live ones, counting and revoking in one statement
+        refreshTokenRepository.revokeOldestSessionsBeyond(session.getUserId(), maxSessions - 1, session.getCreatedAt());
+
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setTokenHash(session.getTokenHash());
+        refreshToken.setFamilyId(session.getFamilyId());
+        refreshToken.setGeneration(session.getGeneration());
+        refreshToken.setUser(userRepository.getReferenceById(session.getUserId()));
+        refreshToken.setExpiresAt(session.getExpiresAt());
+        refreshToken.setRevoked(false);
+        refreshToken.setIpAddress(session.getIpAddress());
+        refreshToken.setUserAgent(session.getUserAgent());
+
+        refreshTokenRepository.save(refreshToken);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<RefreshSession> findByFamilyId(UUID familyId) {
+        return refreshTokenRepository.findByFamilyId(familyId).map(this::toSession);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<RefreshSession> findByTokenHash(byte[] tokenHash) {
+        return refreshTokenRepository.findByTokenHash(tokenHash).map(this::toSession);
+    }
+
+    @Override
+    @Transactional
+    public boolean rotate(UUID familyId, int generation, byte[] tokenHash, LocalDateTime now) {
+        return refreshTokenRepository.rotate(familyId, generation, tokenHash, now) == 1;
+    }
+
+    @Override
+    @Transactional
+    public void revokeFamily(UUID familyId, LocalDateTime now) {
+        refreshTokenRepository.revokeFamily(familyId, now);
+    }
+
+    @Override
+    @Transactional
+    public void revokeAllForUser(Long userId, LocalDateTime now) {
+        refreshTokenRepository.revokeAllUserTokens(userId, now);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countValid(Long userId, LocalDateTime now) {
+        return refreshTokenRepository.countValidTokensByUser(userId, now);
+    }
+
+    private RefreshSession toSession(RefreshToken refreshToken) {
+        return RefreshSession.builder()
+            .familyId(refreshToken.getFamilyId())
+            .userId(refreshToken.getUser().getId())
+            .tokenHash(refreshToken.getTokenHash())
+            .generation(refreshToken.getGeneration())
+            .rotatedAt(refreshToken.getRotatedAt())
+            .expiresAt(refreshToken.getExpiresAt())
+            .revoked(refreshToken.getRevoked())
+            .ipAddress(refreshToken.getIpAddress())
+            .userAgent(refreshToken.getUserAgent())
+            .createdAt(refreshToken.getCreatedAt())
+            .user(refreshToken.getUser())
+            .build();
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -19,6 +20,7 @@ import java.io.IOException;
 /**
  * JWT Authentication Filter
  * Intercepts requests and validates JWT tokens
+ * In stateless mode the principal is built from the signed claims without a database lookup
  */
 @Component
 @RequiredArgsConstructor
@@ -26,6 +28,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final TokenValidityService tokenValidityService;
+    private final RoleBitmap roleBitmap;
+    private final AccessTokenDenylist accessTokenDenylist;
+
+    @Value("${jwt.stateless-authentication:true}")
+    private boolean statelessAuthentication;
 
     @Override
     protected void doFilterInternal(
@@ -36,19 +44,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && jwtUtil.validateToken(jwt)) {
-                String username = jwtUtil.extractUsername(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            VerifiedToken token = StringUtils.hasText(jwt) ? jwtUtil.verifyToken(jwt).orElse(null) : null;
 
-                if (jwtUtil.validateToken(jwt, userDetails)) {
-                    UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                        );
+            if (token != null && !token.isRefreshToken() && !accessTokenDenylist.isRevoked(token)) {
+                UsernamePasswordAuthenticationToken authentication = statelessAuthentication
+                    ? authenticateFromClaims(token)
+                    : authenticateFromUserDetails(token);
 
+                if (authentication != null) {
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -61,6 +64,43 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Build authentication from the signed token claims
+     * Only the in-memory token validity epoch is consulted, no database round trip
+     */
+    private UsernamePasswordAuthenticationToken authenticateFromClaims(VerifiedToken token) {
+        if (!tokenValidityService.isTokenCurrent(token.getUserId(), token.getIssuedAt())) {
+            return null;
+        }
+
+        AuthenticatedUser principal = new AuthenticatedUser(
+            token.getUserId(),
+            token.getSubject(),
+            token.getBranchId(),
+            roleBitmap.authorities(token.getRoles())
+        );
+
+        // The verified token is kept as credentials so controllers never re-parse the header
+        return new UsernamePasswordAuthenticationToken(principal, token, principal.getAuthorities());
+    }
+
+    /**
+     * Build authentication from user details loaded from the database
+     */
+    private UsernamePasswordAuthenticationToken authenticateFromUserDetails(VerifiedToken token) {
+        UserDetails userDetails = userDetailsService.loadUserByUsername(token.getSubject());
+
+        if (!jwtUtil.validateToken(token, userDetails)) {
+            return null;
+        }
+
+        return new UsernamePasswordAuthenticationToken(
+            userDetails,
+            token,
+            userDetails.getAuthorities()
+        );
+    }
+
     /**
      * Extract JWT token from Authorization header
      */
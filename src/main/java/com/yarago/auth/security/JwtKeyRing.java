@@ -0,0 +1,278 @@
+package com.yarago.auth.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.PublicJwk;
+import io.jsonwebtoken.security.SecureDigestAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of signing and verification keys identified by a {@code kid} header
+ * The signing key signs new tokens, every verification key accepts tokens that are still live.
+ * HMAC secrets stay private to this service, asymmetric public keys are published as a JWKS
+ * so other services can verify tokens locally. Keys and the parser are derived once per ring
+ */
+@Getter
+public final class JwtKeyRing {
+
+    public static final String ALGORITHM_HS512 = "HS512";
+    public static final String ALGORITHM_EDDSA = "EdDSA";
+    public static final String ALGORITHM_ES256 = "ES256";
+
+    private final String signingKeyId;
+    private final Key signingKey;
+    private final SecureDigestAlgorithm<?, ?> signatureAlgorithm;
+    private final SecretKey legacyKey;
+    private final Map<String, Key> keys;
+    private final List<Map<String, Object>> publicJwks;
+    private final JwtParser parser;
+    @Getter(AccessLevel.NONE)
+    private final List<JwtParser> legacyParsers;
+
+    private JwtKeyRing(Builder builder) {
+        this.signingKeyId = builder.signingKeyId;
+        this.signingKey = builder.signingKey;
+        this.signatureAlgorithm = builder.signatureAlgorithm;
+        this.legacyKey = builder.legacyKey;
+        this.keys = Map.copyOf(builder.keys);
+        this.publicJwks = List.copyOf(builder.publicJwks);
+        // JwtParser is immutable and thread-safe, one instance serves every request
+        this.parser = Jwts.parser()
+            .keyLocator(new KeyIdLocator())
+            .build();
+        this.legacyParsers = builder.previousHmacKeys.stream()
+            .map(key -> Jwts.parser().keyLocator(new LegacyKeyLocator(key)).build())
+            .toList();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Stamp the signing key id and sign with the signing key
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public JwtBuilder sign(JwtBuilder builder) {
+        return builder
+            .header().keyId(signingKeyId).and()
+            .signWith(signingKey, (SecureDigestAlgorithm) signatureAlgorithm);
+    }
+
+    /**
+     * Verify a token and parse its claims
+     * Tokens without a kid predate key ids, so the secret that signed them is unknown: the current
+     * secret is tried first, then every previous one until one of them verifies the signature
+     */
+    public Jws<Claims> parseSignedClaims(String token) {
+        try {
+            return parser.parseSignedClaims(token);
+        } catch (SignatureException e) {
+            for (JwtParser legacyParser : legacyParsers) {
+                try {
+                    return legacyParser.parseSignedClaims(token);
+                } catch (JwtException ignored) {
+                    // Not signed with this secret, or carries a kid and was already checked by its key
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether new tokens are signed with the HMAC secret
+     */
+    public boolean isHmacSigning() {
+        return signingKey instanceof SecretKey;
+    }
+
+    /**
+     * Resolve the verification key from the token header
+     * Tokens minted before key ids were stamped carry no kid and are tried against the current secret first
+     */
+    private class KeyIdLocator extends LocatorAdapter<Key> {
+
+        @Override
+        protected Key locate(JwsHeader header) {
+            String keyId = header.getKeyId();
+            if (keyId == null) {
+                return legacyKey;
+            }
+            Key key = keys.get(keyId);
+            if (key == null) {
+                throw new JwtException("Unknown signing key id: " + keyId);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Resolve a previous HMAC secret for tokens without a kid, tokens with one are never retried
+     */
+    private static final class LegacyKeyLocator extends LocatorAdapter<Key> {
+
+        private final Key key;
+
+        private LegacyKeyLocator(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        protected Key locate(JwsHeader header) {
+            if (header.getKeyId() != null) {
+                throw new JwtException("Token carries a key id");
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Builder collecting HMAC secrets and optional asymmetric keys
+     */
+    public static final class Builder {
+
+        private final Map<String, Key> keys = new LinkedHashMap<>();
+        private final List<Map<String, Object>> publicJwks = new ArrayList<>();
+        private final List<SecretKey> previousHmacKeys = new ArrayList<>();
+        private String signingKeyId;
+        private Key signingKey;
+        private SecureDigestAlgorithm<?, ?> signatureAlgorithm;
+        private SecretKey legacyKey;
+
+        private Builder() {
+        }
+
+        /**
+         * Register the current HMAC secret and the secrets it replaced, the current one signs by default
+         */
+        public Builder hmacSecrets(String currentSecret, List<String> previousSecrets) {
+            byte[] currentBytes = currentSecret.getBytes(StandardCharsets.UTF_8);
+            legacyKey = Keys.hmacShaKeyFor(currentBytes);
+            signingKeyId = keyIdFor(currentBytes);
+            signingKey = legacyKey;
+            signatureAlgorithm = Jwts.SIG.HS512;
+            keys.put(signingKeyId, legacyKey);
+
+            for (String previousSecret : previousSecrets) {
+                byte[] previousBytes = previousSecret.getBytes(StandardCharsets.UTF_8);
+                SecretKey previousKey = Keys.hmacShaKeyFor(previousBytes);
+                if (keys.putIfAbsent(keyIdFor(previousBytes), previousKey) == null) {
+                    previousHmacKeys.add(previousKey);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sign with an asymmetric key pair instead of the HMAC secret
+         */
+        public Builder asymmetricSigning(String algorithm, String privateKeyPem, String publicKeyPem) {
+            SecureDigestAlgorithm<?, ?> digestAlgorithm = switch (algorithm) {
+                case ALGORITHM_EDDSA -> Jwts.SIG.EdDSA;
+                case ALGORITHM_ES256 -> Jwts.SIG.ES256;
+                default -> throw new IllegalArgumentException("Unsupported JWT signing algorithm: " + algorithm);
+            };
+            String keyAlgorithm = ALGORITHM_EDDSA.equals(algorithm) ? "Ed25519" : "EC";
+
+            signingKeyId = publicKey(algorithm, readPublicKey(publicKeyPem, keyAlgorithm));
+            signingKey = readPrivateKey(privateKeyPem, keyAlgorithm);
+            signatureAlgorithm = digestAlgorithm;
+            return this;
+        }
+
+        /**
+         * Register public keys of retired asymmetric key pairs so their live tokens keep verifying
+         */
+        public Builder previousPublicKeys(String algorithm, List<String> publicKeyPems) {
+            String keyAlgorithm = ALGORITHM_EDDSA.equals(algorithm) ? "Ed25519" : "EC";
+            for (String publicKeyPem : publicKeyPems) {
+                publicKey(algorithm, readPublicKey(publicKeyPem, keyAlgorithm));
+            }
+            return this;
+        }
+
+        private String publicKey(String algorithm, PublicKey publicKey) {
+            PublicJwk<?> jwk = Jwks.builder()
+                .key(publicKey)
+                .algorithm(algorithm)
+                .publicKeyUse("sig")
+                .idFromThumbprint()
+                .build();
+            if (keys.putIfAbsent(jwk.getId(), publicKey) == null) {
+                publicJwks.add(new LinkedHashMap<String, Object>(jwk));
+            }
+            return jwk.getId();
+        }
+
+        public JwtKeyRing build() {
+            if (legacyKey == null) {
+                throw new IllegalStateException("An HMAC secret is required");
+            }
+            return new JwtKeyRing(this);
+        }
+    }
+
+    /**
+     * Derive a stable key id for a secret so every node agrees on it without extra configuration
+     */
+    private static String keyIdFor(byte[] secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static PrivateKey readPrivateKey(String pem, String keyAlgorithm) {
+        try {
+            return KeyFactory.getInstance(keyAlgorithm).generatePrivate(new PKCS8EncodedKeySpec(decodePem(pem)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid " + keyAlgorithm + " private key", e);
+        }
+    }
+
+    private static PublicKey readPublicKey(String pem, String keyAlgorithm) {
+        try {
+            return KeyFactory.getInstance(keyAlgorithm).generatePublic(new X509EncodedKeySpec(decodePem(pem)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid " + keyAlgorithm + " public key", e);
+        }
+    }
+
+    private static byte[] decodePem(String pem) {
+        if (pem == null || pem.isBlank()) {
+            throw new IllegalStateException("PEM key material is required for asymmetric JWT signing");
+        }
+        String base64 = pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
@@ -1,28 +1,59 @@
 package com.yarago.auth.security;
 
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * JWT Utility for token generation and validation
+ * Signing keys come from a key ring that is built once and swapped atomically on rotation
  */
 @Component
+@RequiredArgsConstructor
+@Slf4j
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String CLAIM_USER_ID = "userId";
+    public static final String CLAIM_BRANCH_ID = "branchId";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_ROLE_BITMAP = "rb";
+    public static final String CLAIM_ROLE_BITMAP_VERSION = "rv";
+    public static final String CLAIM_TYPE = "type";
+    public static final String CLAIM_FAMILY_ID = "fid";
+    public static final String CLAIM_GENERATION = "gen";
+    public static final String TOKEN_TYPE_REFRESH = "refresh";
+
+    private final Environment environment;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final FastAccessTokenVerifier fastAccessTokenVerifier;
+    private final RoleBitmap roleBitmap;
+
+    @Value("${jwt.fast-verifier.enabled:true}")
+    private boolean fastVerifierEnabled;
+
+    @Value("${jwt.compact-roles.enabled:false}")
+    private boolean compactRoles;
 
     @Value("${jwt.access-token-expiration}")
     private Long accessTokenExpiration; // milliseconds
@@ -30,22 +61,101 @@ public class JwtUtil {
     @Value("${jwt.refresh-token-expiration}")
     private Long refreshTokenExpiration; // milliseconds
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    private volatile JwtKeyRing keyRing;
+
+    @PostConstruct
+    void initKeyRing() {
+        keyRing = loadKeyRing();
+        verifiedTokenCache.evictAll();
+        log.info("JWT key ring loaded, signing with {} key {} and {} verification keys",
+            keyRing.getSignatureAlgorithm().getId(), keyRing.getSigningKeyId(), keyRing.getKeys().size());
+    }
+
+    /**
+     * Rotate signing keys at runtime when jwt.secret, jwt.previous-secrets or jwt.signing.* change
+     * Tokens signed with a key that moved to jwt.previous-secrets keep verifying until they expire
+     */
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().anyMatch(key -> key.startsWith("jwt."))) {
+            initKeyRing();
+        }
+    }
+
+    private JwtKeyRing loadKeyRing() {
+        Binder binder = Binder.get(environment);
+        JwtKeyRing.Builder builder = JwtKeyRing.builder()
+            .hmacSecrets(
+                environment.getRequiredProperty("jwt.secret"),
+                binder.bind("jwt.previous-secrets", Bindable.listOf(String.class)).orElse(List.of()));
+
+        String algorithm = environment.getProperty("jwt.signing.algorithm", JwtKeyRing.ALGORITHM_HS512);
+        if (!JwtKeyRing.ALGORITHM_HS512.equals(algorithm)) {
+            builder
+                .asymmetricSigning(
+                    algorithm,
+                    environment.getProperty("jwt.signing.private-key"),
+                    environment.getProperty("jwt.signing.public-key"))
+                .previousPublicKeys(
+                    algorithm,
+                    binder.bind("jwt.signing.previous-public-keys", Bindable.listOf(String.class)).orElse(List.of()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Public signing keys as JWK maps, empty while tokens are signed with the HMAC secret
+     */
+    public List<Map<String, Object>> getPublicJwks() {
+        return keyRing.getPublicJwks();
     }
 
     /**
      * Generate access token with user details and roles
      */
     public String generateAccessToken(UserDetails userDetails, Long userId, Long branchId) {
+        return generateAccessToken(
+            userDetails.getUsername(),
+            userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList()),
+            userId,
+            branchId);
+    }
+
+    /**
+     * Generate access token from an already loaded username and role names
+     */
+    public String generateAccessToken(String username, List<String> roles, Long userId, Long branchId) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", userId);
-        claims.put("branchId", branchId);
-        claims.put("roles", userDetails.getAuthorities().stream()
-            .map(GrantedAuthority::getAuthority)
-            .collect(Collectors.toList()));
+        claims.put(CLAIM_USER_ID, userId);
+        claims.put(CLAIM_BRANCH_ID, branchId);
+        claims.put(Claims.ID, newTokenId());
+        putRoles(claims, roles);
+
+        return createToken(claims, username, accessTokenExpiration);
+    }
+
+    /**
+     * Random 96-bit token id, 16 Base64URL characters, so a single access token can be revoked
+     */
+    private static String newTokenId() {
+        byte[] id = new byte[12];
+        ThreadLocalRandom.current().nextBytes(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+    }
 
-        return createToken(claims, userDetails.getUsername(), accessTokenExpiration);
+    /**
+     * Write roles as a versioned bitmask when compact roles are enabled and every role has a bit
+     */
+    private void putRoles(Map<String, Object> claims, List<String> roles) {
+        long mask = compactRoles ? roleBitmap.encode(roles) : -1;
+        if (mask >= 0) {
+            claims.put(CLAIM_ROLE_BITMAP_VERSION, RoleBitmap.VERSION);
+            claims.put(CLAIM_ROLE_BITMAP, mask);
+        } else {
+            claims.put(CLAIM_ROLES, roles);
+        }
     }
 
     /**
@@ -53,23 +163,39 @@ public class JwtUtil {
      */
     public String generateRefreshToken(String username) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("type", "refresh");
+        claims.put(CLAIM_TYPE, TOKEN_TYPE_REFRESH);
         return createToken(claims, username, refreshTokenExpiration);
     }
 
+    /**
+     * Generate a refresh token for one generation of a token family
+     * Every generation of a family shares the family's absolute expiry
+     */
+    public String generateRefreshToken(String username, UUID familyId, int generation, Date expiresAt) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_TYPE, TOKEN_TYPE_REFRESH);
+        claims.put(CLAIM_FAMILY_ID, familyId.toString());
+        claims.put(CLAIM_GENERATION, generation);
+        return createToken(claims, username, new Date(), expiresAt);
+    }
+
     /**
      * Create JWT token
      */
     private String createToken(Map<String, Object> claims, String subject, Long expiration) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + expiration);
-
-        return Jwts.builder()
-            .setClaims(claims)
-            .setSubject(subject)
-            .setIssuedAt(now)
-            .setExpiration(expiryDate)
-            .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+        return createToken(claims, subject, now, new Date(now.getTime() + expiration));
+    }
+
+    private String createToken(Map<String, Object> claims, String subject, Date now, Date expiryDate) {
+        JwtKeyRing ring = keyRing;
+
+        // JwtBuilder is mutable and single-use, only the derived key and key id are reused
+        return ring.sign(Jwts.builder()
+                .claims(claims)
+                .subject(subject)
+                .issuedAt(now)
+                .expiration(expiryDate))
             .compact();
     }
 
@@ -84,14 +210,14 @@ public class JwtUtil {
      * Extract user ID from token
      */
     public Long extractUserId(String token) {
-        return extractClaim(token, claims -> claims.get("userId", Long.class));
+        return extractClaim(token, claims -> claims.get(CLAIM_USER_ID, Long.class));
     }
 
     /**
      * Extract branch ID from token
      */
     public Long extractBranchId(String token) {
-        return extractClaim(token, claims -> claims.get("branchId", Long.class));
+        return extractClaim(token, claims -> claims.get(CLAIM_BRANCH_ID, Long.class));
     }
 
     /**
@@ -113,11 +239,7 @@ public class JwtUtil {
      * Extract all claims from token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-            .verifyWith(getSigningKey())
-            .build()
-            .parseSignedClaims(token)
-            .getPayload();
+        return keyRing.parseSignedClaims(token).getPayload();
     }
 
     /**
@@ -139,15 +261,81 @@ public class JwtUtil {
         }
     }
 
+    /**
+     * Verify signature and expiry once and expose the claims the service relies on
+     * Returns empty for malformed, tampered or expired tokens
+     */
+    public Optional<VerifiedToken> verifyToken(String token) {
+        return verifiedTokenCache.get(token, this::parseAndVerify);
+    }
+
+    /**
+     * Full signature check and claims deserialization, null when the token is invalid
+     * Our own HS512 tokens take the allocation-lean path, anything else goes through JJWT
+     */
+    private VerifiedToken parseAndVerify(String token) {
+        if (fastVerifierEnabled) {
+            VerifiedToken verified = fastAccessTokenVerifier.verify(token, keyRing);
+            if (verified != null) {
+                return verified;
+            }
+        }
+        try {
+            return toVerifiedToken(extractAllClaims(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Map parsed claims to a verified token
+     */
+    private VerifiedToken toVerifiedToken(Claims claims) {
+        return VerifiedToken.builder()
+            .subject(claims.getSubject())
+            .issuedAt(claims.getIssuedAt())
+            .expiration(claims.getExpiration())
+            .userId(claims.get(CLAIM_USER_ID, Long.class))
+            .branchId(claims.get(CLAIM_BRANCH_ID, Long.class))
+            .roles(extractRoles(claims))
+            .type(claims.get(CLAIM_TYPE, String.class))
+            .familyId(claims.get(CLAIM_FAMILY_ID, String.class))
+            .generation(claims.get(CLAIM_GENERATION, Integer.class))
+            .jtiKey(claims.getId() != null ? AccessTokenDenylist.key(claims.getId()) : 0)
+            .build();
+    }
+
+    /**
+     * Read roles from either the compact bitmask or the plain roles list
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> extractRoles(Claims claims) {
+        Long mask = claims.get(CLAIM_ROLE_BITMAP, Long.class);
+        if (mask != null) {
+            Integer version = claims.get(CLAIM_ROLE_BITMAP_VERSION, Integer.class);
+            List<String> roles = version != null && version == RoleBitmap.VERSION ? roleBitmap.decode(mask) : null;
+            if (roles == null) {
+                throw new MalformedJwtException("Unsupported role bitmap");
+            }
+            return roles;
+        }
+        List<String> roles = claims.get(CLAIM_ROLES, List.class);
+        return roles != null ? List.copyOf(roles) : List.of();
+    }
+
+    /**
+     * Validate an already verified token against user details
+     */
+    public boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return token.getSubject().equals(userDetails.getUsername()) && !token.isExpired();
+    }
+
     /**
      * Validate token structure and signature
      */
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token);
+            keyRing.parseSignedClaims(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
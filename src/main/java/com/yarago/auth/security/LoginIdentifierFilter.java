@@ -0,0 +1,333 @@
+package com.yarago.auth.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of every username and email that can log in
+ * A definite miss lets login skip the user query for identifiers that do not exist, which is most
+ * of a credential-stuffing list. Built from a streaming scan of users at startup and rebuilt
+ * periodically to drop deleted identifiers. New identifiers are added locally, broadcast on a
+ * Redis channel and recorded as Redis keys that outlive the next rebuild. A local miss is confirmed
+ * against those keys before it is trusted, so a lost broadcast never rejects a new user; if Redis
+ * cannot answer the miss is not trusted either. Until the first build completes every identifier is
+ * reported as possibly present
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoginIdentifierFilter {
+
+    private static final TypeReference<List<String>> IDENTIFIERS = new TypeReference<>() {
+    };
+
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.login-identifier-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.login-identifier-filter.expected-identifiers:200000}")
+    private long expectedIdentifiers;
+
+    @Value("${auth.login-identifier-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${auth.login-identifier-filter.growth-headroom:1.5}")
+    private double growthHeadroom;
+
+    @Value("${auth.login-identifier-filter.channel:auth:login-identifiers:added}")
+    private String channel;
+
+    @Value("${auth.login-identifier-filter.recent-key-prefix:auth:login-identifiers:recent:}")
+    private String recentKeyPrefix;
+
+    @Value("${auth.login-identifier-filter.recent-ttl:3h}")
+    private Duration recentTtl; // longer than the rebuild interval plus a rebuild
+
+    // Identifiers whose Redis record failed, retried until it succeeds
+    private final Queue<String> unrecorded = new ConcurrentLinkedQueue<>();
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+
+    @PostConstruct
+    void registerListenerAndMetrics() {
+        if (!enabled) {
+            return;
+        }
+        listenerContainer.addMessageListener(this::onIdentifiersAdded, new ChannelTopic(channel));
+
+        Gauge.builder("auth.login.identifier.filter.bytes", this, filter -> filter.current != null ? filter.current.sizeInBytes() : 0)
+            .description("Memory held by the login identifier Bloom filter")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("auth.login.identifier.filter.identifiers", this, filter -> filter.current != null ? filter.current.insertions() : 0)
+            .description("Identifiers added to the login identifier Bloom filter")
+            .register(meterRegistry);
+        Gauge.builder("auth.login.identifier.filter.false.positive.rate", this,
+                filter -> filter.current != null ? filter.current.expectedFalsePositiveRate() : 1)
+            .description("Expected false positive rate at the current fill")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Rebuild from the users table, identifiers added while the scan runs go to both filters
+     */
+    @Scheduled(fixedDelayString = "${auth.login-identifier-filter.rebuild-interval:1h}",
+               initialDelayString = "${auth.login-identifier-filter.rebuild-interval:1h}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            Long users = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+            long capacity = Math.max(expectedIdentifiers, (long) (2 * (users != null ? users : 0) * growthHeadroom));
+
+            BloomFilter next = BloomFilter.create(capacity, falsePositiveRate);
+            building = next;
+            // Postgres only streams with autocommit off, so the scan runs in a transaction with its own fetch size
+            JdbcTemplate scan = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+            scan.setFetchSize(1000);
+            transactionTemplate.executeWithoutResult(status -> {
+                scan.query("SELECT username, email FROM users", resultSet -> {
+                    next.put(resultSet.getString(1));
+                    next.put(resultSet.getString(2));
+                });
+            });
+            current = next;
+
+            log.info("Login identifier filter built with {} identifiers, {} KiB, expected false positive rate {} in {} ms",
+                next.insertions(), next.sizeInBytes() / 1024, String.format("%.4f", next.expectedFalsePositiveRate()),
+                (System.nanoTime() - start) / 1_000_000);
+        } catch (DataAccessException e) {
+            log.warn("Could not build login identifier filter, keeping the previous one: {}", e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * False only when the identifier is certainly not a username or email of any user
+     * A local miss is checked against the identifiers recently added on any node
+     */
+    public boolean mightContain(String identifier) {
+        BloomFilter filter = current;
+        if (filter == null || identifier == null || filter.mightContain(identifier)) {
+            return true;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(recentKeyPrefix + identifier))) {
+                // Missed broadcast, heal the local filter
+                addLocally(List.of(identifier));
+                return true;
+            }
+            return false;
+        } catch (DataAccessException e) {
+            log.debug("Could not confirm login identifier filter miss, treating it as a possible match: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Make new identifiers known to every node, again after commit so a concurrent rebuild keeps them
+     */
+    public void add(String... identifiers) {
+        if (!enabled) {
+            return;
+        }
+        List<String> values = Arrays.stream(identifiers).filter(Objects::nonNull).distinct().toList();
+        if (values.isEmpty()) {
+            return;
+        }
+
+        addLocally(values);
+        record(values);
+        publish(values);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addLocally(values);
+                    publish(values);
+                }
+            });
+        }
+    }
+
+    /**
+     * Retry Redis records that failed, other nodes confirm their misses against them
+     */
+    @Scheduled(fixedDelayString = "${auth.login-identifier-filter.record-retry-interval:5s}")
+    public void retryUnrecorded() {
+        if (unrecorded.isEmpty()) {
+            return;
+        }
+        List<String> pending = Stream.generate(unrecorded::poll).takeWhile(Objects::nonNull).distinct().toList();
+        record(pending);
+    }
+
+    private void record(List<String> identifiers) {
+        for (String identifier : identifiers) {
+            try {
+                redisTemplate.opsForValue().set(recentKeyPrefix + identifier, "1", recentTtl);
+            } catch (DataAccessException e) {
+                log.warn("Could not record new login identifier, retrying: {}", e.getMessage());
+                unrecorded.add(identifier);
+            }
+        }
+    }
+
+    private void addLocally(List<String> identifiers) {
+        BloomFilter filter = current;
+        BloomFilter next = building;
+        for (String identifier : identifiers) {
+            if (filter != null) {
+                filter.put(identifier);
+            }
+            if (next != null) {
+                next.put(identifier);
+            }
+        }
+    }
+
+    private void publish(List<String> identifiers) {
+        try {
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(identifiers));
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Could not broadcast new login identifiers, other nodes pick them up on rebuild: {}", e.getMessage());
+        }
+    }
+
+    private void onIdentifiersAdded(Message message, byte[] pattern) {
+        try {
+            addLocally(objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), IDENTIFIERS));
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed login identifier message: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lock-free Bloom filter over an AtomicLongArray using double hashing
+     * Sized for 1M users (2M identifiers) at 1% it holds 19.2M bits, about 2.3 MiB, with 7 hashes
+     */
+    static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLong insertions = new AtomicLong();
+
+        private BloomFilter(long bitCount, int hashCount) {
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, (bitCount + 63) / 64);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words * 64;
+            this.hashCount = hashCount;
+        }
+
+        static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long bitCount = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+            int hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+            return new BloomFilter(Math.max(64, bitCount), hashCount);
+        }
+
+        void put(String value) {
+            if (value == null) {
+                return;
+            }
+            long h1 = hash(value, SEED_1);
+            long h2 = hash(value, SEED_2) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                long mask = 1L << bit;
+                bits.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash(value, SEED_1);
+            long h2 = hash(value, SEED_2) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long sizeInBytes() {
+            return (long) bits.length() * Long.BYTES;
+        }
+
+        long insertions() {
+            return insertions.get();
+        }
+
+        double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashCount * insertions.get() / bitCount), hashCount);
+        }
+
+        /**
+         * 64-bit FNV-1a over the UTF-16 code units with a SplitMix64 finalizer
+         */
+        private static long hash(String value, long seed) {
+            long h = seed ^ 0xCBF29CE484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001B3L;
+            }
+            h ^= h >>> 30;
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 27;
+            h *= 0x94D049BB133111EBL;
+            return h ^ (h >>> 31);
+        }
+    }
+}
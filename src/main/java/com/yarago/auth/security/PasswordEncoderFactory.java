@@ -0,0 +1,195 @@
+package com.yarago.auth.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Builds the password encoder from auth.password-hashing settings
+ * New hashes are written as {bcrypt} or {argon2} with the configured work factor. Unprefixed
+ * hashes from before the delegating encoder are matched as BCrypt. upgradeEncoding reports hashes
+ * in another algorithm or below the work factor; hashes above it are only lowered when the BCrypt
+ * strength is pinned. A calibrated strength is shared through Redis, the first node to calibrate
+ * sets it for the cluster, so nodes on different hardware never rehash each other's hashes
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PasswordEncoderFactory {
+
+    public static final String ALGORITHM_BCRYPT = "bcrypt";
+    public static final String ALGORITHM_ARGON2 = "argon2";
+
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+    private static final int CALIBRATION_ROUNDS = 3;
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${auth.password-hashing.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${auth.password-hashing.bcrypt.strength:0}")
+    private int bcryptStrength; // 0 = calibrate against target-latency
+
+    @Value("${auth.password-hashing.bcrypt.target-latency:250ms}")
+    private Duration bcryptTargetLatency;
+
+    @Value("${auth.password-hashing.bcrypt.min-strength:10}")
+    private int bcryptMinStrength;
+
+    @Value("${auth.password-hashing.bcrypt.max-strength:14}")
+    private int bcryptMaxStrength;
+
+    @Value("${auth.password-hashing.bcrypt.calibrated-strength-key:auth:password-hashing:bcrypt-strength}")
+    private String calibratedStrengthKey;
+
+    @Value("${auth.password-hashing.argon2.memory-kib:19456}")
+    private int argon2MemoryKib;
+
+    @Value("${auth.password-hashing.argon2.iterations:2}")
+    private int argon2Iterations;
+
+    @Value("${auth.password-hashing.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    /**
+     * Delegating encoder writing the configured algorithm and matching every supported one
+     */
+    public PasswordEncoder createPasswordEncoder() {
+        if (!ALGORITHM_BCRYPT.equals(algorithm) && !ALGORITHM_ARGON2.equals(algorithm)) {
+            throw new IllegalArgumentException("Unsupported password hashing algorithm: " + algorithm);
+        }
+
+        boolean pinned = bcryptStrength > 0;
+        int strength = pinned ? bcryptStrength : clusterBCryptStrength();
+        PasswordEncoder bcrypt = new CostMatchingBCryptPasswordEncoder(strength, pinned);
+        PasswordEncoder argon2 = new ParameterMatchingArgon2PasswordEncoder(
+            argon2Parallelism, argon2MemoryKib, argon2Iterations);
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, Map.of(
+            ALGORITHM_BCRYPT, bcrypt,
+            ALGORITHM_ARGON2, argon2));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        if (ALGORITHM_ARGON2.equals(algorithm)) {
+            log.info("Password hashing with Argon2id, memory {} KiB, iterations {}, parallelism {}",
+                argon2MemoryKib, argon2Iterations, argon2Parallelism);
+        } else {
+            log.info("Password hashing with BCrypt strength {}", strength);
+        }
+        return encoder;
+    }
+
+    /**
+     * BCrypt strength shared by every node, calibrated by whichever node starts first
+     * Without Redis the node falls back to its own calibration and asks for the strength to be pinned
+     */
+    private int clusterBCryptStrength() {
+        try {
+            String shared = redisTemplate.opsForValue().get(calibratedStrengthKey);
+            if (shared == null) {
+                int calibrated = calibrateBCryptStrength();
+                Boolean claimed = redisTemplate.opsForValue().setIfAbsent(calibratedStrengthKey, String.valueOf(calibrated));
+                shared = Boolean.TRUE.equals(claimed) ? String.valueOf(calibrated) : redisTemplate.opsForValue().get(calibratedStrengthKey);
+            }
+            int strength = Math.max(bcryptMinStrength, Math.min(bcryptMaxStrength, Integer.parseInt(shared)));
+            log.info("Using cluster BCrypt strength {} from {}, pin auth.password-hashing.bcrypt.strength to change it",
+                strength, calibratedStrengthKey);
+            return strength;
+        } catch (DataAccessException | NumberFormatException e) {
+            int strength = calibrateBCryptStrength();
+            log.warn("Could not share the calibrated BCrypt strength ({}), set auth.password-hashing.bcrypt.strength={} " +
+                "so every node hashes with the same cost", e.getMessage(), strength);
+            return strength;
+        }
+    }
+
+    /**
+     * Highest BCrypt strength whose hash stays within the target latency on this node
+     * Each strength step doubles the work, so one measurement at the minimum is extrapolated
+     */
+    private int calibrateBCryptStrength() {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(bcryptMinStrength);
+        String sample = "calibration-sample";
+        probe.encode(sample); // warm up
+
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            probe.encode(sample);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+
+        int strength = bcryptMinStrength;
+        long estimate = fastest;
+        long target = bcryptTargetLatency.toNanos();
+        while (strength < bcryptMaxStrength && estimate * 2 <= target) {
+            strength++;
+            estimate *= 2;
+        }
+        log.info("Calibrated BCrypt strength {} (~{} ms per hash, target {} ms)",
+            strength, estimate / 1_000_000, bcryptTargetLatency.toMillis());
+        return strength;
+    }
+
+    /**
+     * BCrypt encoder that asks for a rehash when the stored cost is lower, or higher when lowering is allowed
+     */
+    private static final class CostMatchingBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+        private final int strength;
+        private final boolean lowerCost;
+
+        private CostMatchingBCryptPasswordEncoder(int strength, boolean lowerCost) {
+            super(strength);
+            this.strength = strength;
+            this.lowerCost = lowerCost;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            // $2a$10$<salt and hash>
+            String[] parts = encodedPassword != null ? encodedPassword.split("\\$", 4) : new String[0];
+            if (parts.length < 4) {
+                return false;
+            }
+            try {
+                int cost = Integer.parseInt(parts[2]);
+                return cost < strength || (lowerCost && cost > strength);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Argon2id encoder that asks for a rehash whenever memory, iterations or parallelism differ
+     */
+    private static final class ParameterMatchingArgon2PasswordEncoder extends Argon2PasswordEncoder {
+
+        private final String parameters;
+
+        private ParameterMatchingArgon2PasswordEncoder(int parallelism, int memoryKib, int iterations) {
+            super(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, parallelism, memoryKib, iterations);
+            this.parameters = "m=" + memoryKib + ",t=" + iterations + ",p=" + parallelism;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            // $argon2id$v=19$m=19456,t=2,p=1$<salt>$<hash>
+            String[] parts = encodedPassword != null ? encodedPassword.split("\\$") : new String[0];
+            return parts.length == 6 && !parameters.equals(parts[3]);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, CPU-sized executor for password hashing
+ * Request threads hand BCrypt work to a fixed pool behind a short queue. When the queue is full,
+ * or a task cannot finish before its deadline, the request fails fast with 429 instead of
+ * tying up a Tomcat thread, so a login burst cannot starve refresh and /me
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PasswordHashingExecutor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.password-hashing.threads:0}")
+    private int threads; // 0 = available processors
+
+    @Value("${auth.password-hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${auth.password-hashing.task-timeout:2s}")
+    private Duration taskTimeout;
+
+    private ThreadPoolExecutor executor;
+    private Timer waitTimer;
+    private Timer hashTimer;
+    private Counter queueFullRejections;
+    private Counter deadlineRejections;
+
+    @PostConstruct
+    void initExecutor() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, queue,
+            hashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+
+        Gauge.builder("auth.password.hashing.queue.size", queue, BlockingQueue::size)
+            .description("Password hashing tasks waiting for a thread")
+            .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Password hashing tasks running")
+            .register(meterRegistry);
+        waitTimer = Timer.builder("auth.password.hashing.wait")
+            .description("Time a password hashing task spent queued")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        hashTimer = Timer.builder("auth.password.hashing.duration")
+            .description("Time spent hashing or matching a password")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        queueFullRejections = rejectionCounter("queue-full");
+        deadlineRejections = rejectionCounter("deadline");
+
+        log.info("Password hashing executor started with {} threads and queue capacity {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Run password work on the hashing pool and wait for the result
+     * Throws TooManyRequestsException when the pool is saturated or the deadline passes
+     */
+    public <T> T execute(Supplier<T> work) {
+        long submittedAt = System.nanoTime();
+        long deadline = submittedAt + taskTimeout.toNanos();
+
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                // Skip work nobody is waiting for any more
+                if (startedAt - deadline > 0) {
+                    throw new CancellationException("Password hashing deadline passed in queue");
+                }
+                try {
+                    return work.get();
+                } finally {
+                    hashTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueFullRejections.increment();
+            throw saturated();
+        }
+
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            future.cancel(false);
+            deadlineRejections.increment();
+            throw saturated();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                deadlineRejections.increment();
+                throw saturated();
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+
+    /**
+     * Suggest a retry once the current queue has drained, at least one second
+     */
+    private TooManyRequestsException saturated() {
+        double meanSeconds = hashTimer.mean(TimeUnit.SECONDS);
+        int poolSize = executor.getMaximumPoolSize();
+        long drainSeconds = (long) Math.ceil((executor.getQueue().size() + poolSize) * meanSeconds / poolSize);
+        return new TooManyRequestsException("Authentication service is busy, please retry shortly",
+            Math.max(1, drainSeconds));
+    }
+
+    private Counter rejectionCounter(String reason) {
+        return Counter.builder("auth.password.hashing.rejected")
+            .description("Password hashing tasks rejected under load")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    private static ThreadFactory hashingThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
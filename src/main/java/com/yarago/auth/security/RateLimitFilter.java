@@ -0,0 +1,70 @@
+package com.yarago.auth.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-IP rate limit for login, register and refresh
+ * Runs before authentication and before the request body is read, so a rejected request
+ * costs no database or crypto work
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Map<String, String> ENDPOINTS = Map.of(
+        "/api/v1/auth/login", RateLimiter.ENDPOINT_LOGIN,
+        "/api/v1/auth/register", RateLimiter.ENDPOINT_REGISTER,
+        "/api/v1/auth/refresh", RateLimiter.ENDPOINT_REFRESH
+    );
+
+    private final RateLimiter rateLimiter;
+    private final ClientIpResolver clientIpResolver;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !ENDPOINTS.containsKey(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        String endpoint = ENDPOINTS.get(request.getRequestURI());
+        long retryAfterMillis = rateLimiter.tryAcquire(endpoint, RateLimiter.KEY_TYPE_IP, clientIpResolver.resolve(request));
+        if (retryAfterMillis > 0) {
+            reject(response, TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", false);
+        result.put("message", "Too many requests, please retry later");
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), result);
+    }
+}
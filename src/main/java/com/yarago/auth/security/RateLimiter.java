@@ -0,0 +1,115 @@
+package com.yarago.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yarago.auth.config.RateLimitProperties;
+import com.yarago.auth.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process token bucket limiter for the auth endpoints
+ * Implemented as GCRA: each key holds one AtomicLong with its theoretical arrival time, updated by
+ * compare-and-set, so a check is a map lookup and a CAS with no locks. Keys live in a bounded
+ * Caffeine cache and are evicted when idle
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimiter {
+
+    public static final String ENDPOINT_LOGIN = "login";
+    public static final String ENDPOINT_REGISTER = "register";
+    public static final String ENDPOINT_REFRESH = "refresh";
+
+    public static final String KEY_TYPE_IP = "ip";
+    public static final String KEY_TYPE_USERNAME = "username";
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, AtomicLong> arrivalTimes;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void initCache() {
+        arrivalTimes = Caffeine.newBuilder()
+            .maximumSize(properties.getMaxTrackedKeys())
+            .expireAfterAccess(properties.getIdleExpiry())
+            .build();
+        meterRegistry.gauge("auth.rate.limit.tracked.keys", arrivalTimes, cache -> cache.estimatedSize());
+    }
+
+    /**
+     * Take one request from the key's bucket
+     * Returns 0 when allowed, otherwise the milliseconds until a request would be allowed
+     */
+    public long tryAcquire(String endpoint, String keyType, String key) {
+        RateLimitProperties.Limit limit = limitFor(endpoint, keyType);
+        if (limit == null || key == null) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, limit.getPerMinute());
+        long tolerance = interval * (Math.max(1, limit.getBurst()) - 1);
+        AtomicLong arrivalTime = arrivalTimes.get(endpoint + '|' + keyType + '|' + key, k -> new AtomicLong(now));
+
+        while (true) {
+            long theoretical = arrivalTime.get();
+            long base = Math.max(theoretical, now);
+            long allowedAt = base - tolerance;
+            if (now < allowedAt) {
+                count(endpoint, keyType, "rejected");
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(allowedAt - now));
+            }
+            if (arrivalTime.compareAndSet(theoretical, base + interval)) {
+                count(endpoint, keyType, "allowed");
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Limit by submitted username, throwing TooManyRequestsException when the bucket is empty
+     */
+    public void checkUsername(String endpoint, String username) {
+        if (username == null) {
+            return;
+        }
+        long retryAfterMillis = tryAcquire(endpoint, KEY_TYPE_USERNAME, username.toLowerCase(Locale.ROOT));
+        if (retryAfterMillis > 0) {
+            throw new TooManyRequestsException("Too many attempts, please retry later",
+                TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+        }
+    }
+
+    private RateLimitProperties.Limit limitFor(String endpoint, String keyType) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        RateLimitProperties.EndpointLimits limits = properties.getEndpoints().get(endpoint);
+        if (limits == null) {
+            return null;
+        }
+        return KEY_TYPE_IP.equals(keyType) ? limits.getIp() : limits.getUsername();
+    }
+
+    private void count(String endpoint, String keyType, String outcome) {
+        counters.computeIfAbsent(endpoint + '|' + keyType + '|' + outcome, name -> Counter.builder("auth.rate.limit.requests")
+            .description("Requests checked by the auth rate limiter")
+            .tag("endpoint", endpoint)
+            .tag("key_type", keyType)
+            .tag("outcome", outcome)
+            .register(meterRegistry))
+            .increment();
+    }
+}
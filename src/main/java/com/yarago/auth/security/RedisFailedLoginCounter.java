@@ -0,0 +1,70 @@
+package com.yarago.auth.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Failed login counter shared by every node, an exact sliding log in a Redis sorted set
+ * Trim, add and count run in one Lua script, so the threshold is decided atomically across nodes.
+ * Falls back to a per-node counter while Redis is unreachable so lockout keeps working
+ */
+@Component
+@ConditionalOnProperty(name = "auth.login-lockout.store", havingValue = "redis")
+@Slf4j
+public class RedisFailedLoginCounter implements FailedLoginCounter {
+
+    private static final RedisScript<Long> RECORD_FAILURE = RedisScript.of(
+        "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', tonumber(ARGV[1]) - tonumber(ARGV[2])) " +
+        "redis.call('ZADD', KEYS[1], ARGV[1], ARGV[3]) " +
+        "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+        "return redis.call('ZCARD', KEYS[1])",
+        Long.class);
+
+    private static final String KEY_PREFIX = "auth:failed-logins:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final long windowMillis;
+    private final InMemoryFailedLoginCounter fallback;
+
+    public RedisFailedLoginCounter(
+            StringRedisTemplate redisTemplate,
+            @Value("${auth.login-lockout.window:15m}") Duration window,
+            @Value("${auth.login-lockout.max-tracked-users:100000}") long maxTrackedUsers) {
+        this.redisTemplate = redisTemplate;
+        this.windowMillis = window.toMillis();
+        this.fallback = new InMemoryFailedLoginCounter(window, maxTrackedUsers);
+    }
+
+    @Override
+    public int recordFailure(Long userId) {
+        try {
+            Long failures = redisTemplate.execute(RECORD_FAILURE, List.of(KEY_PREFIX + userId),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(windowMillis),
+                UUID.randomUUID().toString());
+            return failures != null ? failures.intValue() : fallback.recordFailure(userId);
+        } catch (DataAccessException e) {
+            log.warn("Failed login store unavailable, counting on this node: {}", e.getMessage());
+            return fallback.recordFailure(userId);
+        }
+    }
+
+    @Override
+    public void reset(Long userId) {
+        fallback.reset(userId);
+        try {
+            redisTemplate.delete(KEY_PREFIX + userId);
+        } catch (DataAccessException e) {
+            log.warn("Could not reset failed logins for user {}: {}", userId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.yarago.auth.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Refresh token families in Redis, expired by native TTLs so nothing has to sweep them
+ * Each family is a hash that expires with the family, its current token digest points back to it,
+ * and each user has a sorted set of live family ids scored by expiry (oldest session first, since
+ * every family has the same lifetime). Multi-key updates run as Lua scripts that reach keys of other
+ * families and digests by name, so they need a single Redis primary: cluster mode is rejected at
+ * startup. Requires Redis 6.2 for SET PXAT
+ */
+@Component
+@ConditionalOnProperty(name = "auth.refresh-token.store", havingValue = "redis")
+@RequiredArgsConstructor
+public class RedisRefreshTokenStore implements RefreshTokenStore {
+
+    private static final String FAMILY_PREFIX = "auth:rt:family:";
+    private static final String HASH_PREFIX = "auth:rt:hash:";
+    private static final String USER_PREFIX = "auth:rt:user:";
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    // KEYS: family, digest, user sessions  ARGV: familyId, userId, digest, expiresAt, now, maxSessions, ip, userAgent
+    private static final RedisScript<Long> SAVE = RedisScript.of(
+        "redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', ARGV[5]) " +
+        "local excess = redis.call('ZCARD', KEYS[3]) - (tonumber(ARGV[6]) - 1) " +
+        "if excess > 0 then " +
+        "  for _, fid in ipairs(redis.call('ZRANGE', KEYS[3], 0, excess - 1)) do " +
+        "    if redis.call('EXISTS', '" + FAMILY_PREFIX + "' .. fid) == 1 then " +
+        "      redis.call('HSET', '" + FAMILY_PREFIX + "' .. fid, 'revoked', '1', 'revokedAt', ARGV[5]) " +
+        "    end " +
+        "    redis.call('ZREM', KEYS[3], fid) " +
+        "  end " +
+        "end " +
+        "redis.call('HSET', KEYS[1], 'user', ARGV[2], 'hash', ARGV[3], 'gen', '0', 'exp', ARGV[4], " +
+        "  'revoked', '0', 'created', ARGV[5], 'ip', ARGV[7], 'ua', ARGV[8]) " +
+        "redis.call('PEXPIREAT', KEYS[1], ARGV[4]) " +
+        "redis.call('SET', KEYS[2], ARGV[1], 'PXAT', ARGV[4]) " +
+        "redis.call('ZADD', KEYS[3], ARGV[4], ARGV[1]) " +
+        "redis.call('PEXPIREAT', KEYS[3], ARGV[4]) " +
+        "return 1",
+        Long.class);
+
+    // KEYS: family  ARGV: generation, new digest, now, familyId
+    private static final RedisScript<Long> ROTATE = RedisScript.of(
+        "local f = redis.call('HMGET', KEYS[1], 'gen', 'revoked', 'exp', 'hash') " +
+        "if not f[1] or f[2] == '1' or tonumber(f[3]) <= tonumber(ARGV[3]) or f[1] ~= ARGV[1] then return 0 end " +
+        "redis.call('HSET', KEYS[1], 'gen', tonumber(ARGV[1]) + 1, 'hash', ARGV[2], 'rotated', ARGV[3]) " +
+        "redis.call('DEL', '" + HASH_PREFIX + "' .. f[4]) " +
+        "redis.call('SET', '" + HASH_PREFIX + "' .. ARGV[2], ARGV[4], 'PXAT', f[3]) " +
+        "return 1",
+        Long.class);
+
+    // KEYS: family  ARGV: now, familyId
+    private static final RedisScript<Long> REVOKE_FAMILY = RedisScript.of(
+        "local user = redis.call('HGET', KEYS[1], 'user') " +
+        "if not user then return 0 end " +
+        "redis.call('HSET', KEYS[1], 'revoked', '1', 'revokedAt', ARGV[1]) " +
+        "redis.call('ZREM', '" + USER_PREFIX + "' .. user, ARGV[2]) " +
+        "return 1",
+        Long.class);
+
+    // KEYS: user sessions  ARGV: now
+    private static final RedisScript<Long> REVOKE_ALL = RedisScript.of(
+        "local fids = redis.call('ZRANGEBYSCORE', KEYS[1], '(' .. ARGV[1], '+inf') " +
+        "for _, fid in ipairs(fids) do " +
+        "  if redis.call('EXISTS', '" + FAMILY_PREFIX + "' .. fid) == 1 then " +
+        "    redis.call('HSET', '" + FAMILY_PREFIX + "' .. fid, 'revoked', '1', 'revokedAt', ARGV[1]) " +
+        "  end " +
+        "end " +
+        "redis.call('DEL', KEYS[1]) " +
+        "return #fids",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * Refuse to start against a Redis cluster, where the scripts' undeclared keys may live on other shards
+     */
+    @PostConstruct
+    void rejectClusterMode() {
+        Properties cluster = redisTemplate.execute((RedisCallback<Properties>) connection ->
+            connection.serverCommands().info("cluster"));
+        if (cluster != null && "1".equals(cluster.getProperty("cluster_enabled"))) {
+            throw new IllegalStateException("auth.refresh-token.store=redis needs a single Redis primary, " +
+                "Redis cluster mode is not supported");
+        }
+    }
+
+    @Override
+    public void save(RefreshSession session, int maxSessions) {
+        String familyId = session.getFamilyId().toString();
+        String digest = HEX.formatHex(session.getTokenHash());
+        redisTemplate.execute(SAVE,
+            List.of(FAMILY_PREFIX + familyId, HASH_PREFIX + digest, USER_PREFIX + session.getUserId()),
+            familyId,
+            String.valueOf(session.getUserId()),
+            digest,
+            String.valueOf(toMillis(session.getExpiresAt())),
+            String.valueOf(toMillis(session.getCreatedAt())),
+            String.valueOf(maxSessions),
+            session.getIpAddress() != null ? session.getIpAddress() : "",
+            session.getUserAgent() != null ? session.getUserAgent() : "");
+    }
+
+    @Override
+    public Optional<RefreshSession> findByFamilyId(UUID familyId) {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(FAMILY_PREFIX + familyId);
+        if (fields.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(RefreshSession.builder()
+            .familyId(familyId)
+            .userId(Long.valueOf((String) fields.get("user")))
+            .tokenHash(HEX.parseHex((String) fields.get("hash")))
+            .generation(Integer.parseInt((String) fields.get("gen")))
+            .rotatedAt(toLocalDateTime((String) fields.get("rotated")))
+            .expiresAt(toLocalDateTime((String) fields.get("exp")))
+            .revoked("1".equals(fields.get("revoked")))
+            .ipAddress(emptyToNull((String) fields.get("ip")))
+            .userAgent(emptyToNull((String) fields.get("ua")))
+            .createdAt(toLocalDateTime((String) fields.get("created")))
+            .build());
+    }
+
+    @Override
+    public Optional<RefreshSession> findByTokenHash(byte[] tokenHash) {
+        String familyId = redisTemplate.opsForValue().get(HASH_PREFIX + HEX.formatHex(tokenHash));
+        return familyId != null ? findByFamilyId(UUID.fromString(familyId)) : Optional.empty();
+    }
+
+    @Override
+    public boolean rotate(UUID familyId, int generation, byte[] tokenHash, LocalDateTime now) {
+        Long rotated = redisTemplate.execute(ROTATE, List.of(FAMILY_PREFIX + familyId),
+            String.valueOf(generation),
+            HEX.formatHex(tokenHash),
+            String.valueOf(toMillis(now)),
+            familyId.toString());
+        return rotated != null && rotated == 1;
+    }
+
+    @Override
+    public void revokeFamily(UUID familyId, LocalDateTime now) {
+        redisTemplate.execute(REVOKE_FAMILY, List.of(FAMILY_PREFIX + familyId),
+            String.valueOf(toMillis(now)), familyId.toString());
+    }
+
+    @Override
+    public void revokeAllForUser(Long userId, LocalDateTime now) {
+        redisTemplate.execute(REVOKE_ALL, List.of(USER_PREFIX + userId), String.valueOf(toMillis(now)));
+    }
+
+    @Override
+    public long countValid(Long userId, LocalDateTime now) {
+        Long count = redisTemplate.opsForZSet().count(USER_PREFIX + userId, toMillis(now) + 1, Double.POSITIVE_INFINITY);
+        return count != null ? count : 0;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(String millis) {
+        return millis != null ? LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(millis)), ZoneId.systemDefault()) : null;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
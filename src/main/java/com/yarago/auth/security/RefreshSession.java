@@ -0,0 +1,34 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.entity.User;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A refresh token family as held by a RefreshTokenStore
+ * One session per login; refreshes rotate its generation and token digest in place
+ */
+@Value
+@Builder
+public class RefreshSession {
+
+    UUID familyId;
+    Long userId;
+    byte[] tokenHash;
+    int generation;
+    LocalDateTime rotatedAt;
+    LocalDateTime expiresAt;
+    boolean revoked;
+    String ipAddress;
+    String userAgent;
+    LocalDateTime createdAt;
+    // The user with roles when the store reads it in the same statement, null otherwise
+    User user;
+
+    public boolean isValid(LocalDateTime now) {
+        return !revoked && now.isBefore(expiresAt);
+    }
+}
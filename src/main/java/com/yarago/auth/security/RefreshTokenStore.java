@@ -0,0 +1,39 @@
+package com.yarago.auth.security;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Storage of refresh token families
+ * Selected by auth.refresh-token.store: jpa (default, the refresh_tokens table) or redis.
+ * Every method is atomic on its own, callers need no surrounding transaction
+ */
+public interface RefreshTokenStore {
+
+    /**
+     * Save a new session, first revoking the user's oldest live sessions so at most maxSessions remain
+     */
+    void save(RefreshSession session, int maxSessions);
+
+    Optional<RefreshSession> findByFamilyId(UUID familyId);
+
+    /**
+     * Find a session by the digest of its current token, for tokens issued without a family claim
+     */
+    Optional<RefreshSession> findByTokenHash(byte[] tokenHash);
+
+    /**
+     * Advance a live family from the presented generation to the next, false when it is no longer at that generation
+     */
+    boolean rotate(UUID familyId, int generation, byte[] tokenHash, LocalDateTime now);
+
+    void revokeFamily(UUID familyId, LocalDateTime now);
+
+    /**
+     * Revoke every live session of the user
+     */
+    void revokeAllForUser(Long userId, LocalDateTime now);
+
+    long countValid(Long userId, LocalDateTime now);
+}
@@ -0,0 +1,196 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.entity.Role;
+import com.yarago.auth.repository.RoleRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compact role encoding for access tokens
+ * Version 1 maps bit n of the {@code rb} claim to the role whose roles.id is n, so roles seeded
+ * in V2__seed_roles_and_users.sql keep their bits when new roles are added.
+ * Decoding returns shared immutable role lists and authority sets instead of allocating per request.
+ * The mapping is reloaded on a schedule, and at once (rate limited) when a token carries a bit this
+ * node does not know yet, so roles added after startup or by a newer node decode without a restart
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RoleBitmap {
+
+    public static final int VERSION = 1;
+
+    private static final int MAX_BIT = 62;
+    private static final int MAX_CACHED_COMBINATIONS = 1024;
+
+    private final RoleRepository roleRepository;
+
+    @Value("${jwt.compact-roles.unknown-bit-reload-interval:30s}")
+    private Duration unknownBitReloadInterval;
+
+    private final AtomicLong lastUnknownBitReload = new AtomicLong(System.nanoTime());
+
+    private volatile Map<String, Integer> bitsByRole = Map.of();
+    private volatile String[] rolesByBit = new String[0];
+
+    private final Map<Long, List<String>> roleNamesByMask = new ConcurrentHashMap<>();
+    private final Map<List<String>, List<GrantedAuthority>> authoritiesByRoles = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    synchronized void loadRoles() {
+        Map<String, Integer> bits = new HashMap<>();
+        String[] names = new String[MAX_BIT + 1];
+        for (Role role : roleRepository.findAll()) {
+            if (role.getId() > MAX_BIT) {
+                log.warn("Role {} has id {} beyond the compact role bitmap, tokens for it use the roles list",
+                    role.getName(), role.getId());
+                continue;
+            }
+            int bit = role.getId().intValue();
+            bits.put(role.getName(), bit);
+            names[bit] = role.getName();
+        }
+        boolean changed = !Arrays.equals(names, rolesByBit);
+        bitsByRole = Map.copyOf(bits);
+        rolesByBit = names;
+        if (changed) {
+            // Cached decodings may name a role that was renamed since
+            roleNamesByMask.clear();
+        }
+    }
+
+    /**
+     * Pick up roles added or renamed since the last load
+     */
+    @Scheduled(fixedDelayString = "${jwt.compact-roles.reload-interval:5m}",
+               initialDelayString = "${jwt.compact-roles.reload-interval:5m}")
+    public void reloadRoles() {
+        try {
+            loadRoles();
+        } catch (DataAccessException e) {
+            log.warn("Could not reload the role bitmap, keeping the current mapping: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Encode role names as a bitmask, -1 when a role has no bit
+     */
+    public long encode(Collection<String> roles) {
+        long mask = 0;
+        for (String role : roles) {
+            Integer bit = bitsByRole.get(role);
+            if (bit == null) {
+                return -1;
+            }
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Decode a bitmask to a shared immutable list of role names, null when a bit is unknown
+     */
+    public List<String> decode(long mask) {
+        List<String> cached = roleNamesByMask.get(mask);
+        if (cached != null) {
+            return cached;
+        }
+        if (mask < 0) {
+            return null;
+        }
+        List<String> roles = decode(mask, rolesByBit);
+        if (roles == null && reloadForUnknownBit()) {
+            roles = decode(mask, rolesByBit);
+        }
+        if (roles == null) {
+            return null;
+        }
+        List<String> decoded = List.copyOf(roles);
+        if (roleNamesByMask.size() < MAX_CACHED_COMBINATIONS) {
+            roleNamesByMask.putIfAbsent(mask, decoded);
+        }
+        return decoded;
+    }
+
+    private static List<String> decode(long mask, String[] names) {
+        List<String> roles = new ArrayList<>();
+        for (int bit = 0; bit <= MAX_BIT; bit++) {
+            if ((mask & (1L << bit)) != 0) {
+                if (names[bit] == null) {
+                    return null;
+                }
+                roles.add(names[bit]);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Reload the mapping for a token with an unknown bit, at most once per interval across threads
+     * so tokens with bogus bits cannot turn every request into a roles query
+     */
+    private boolean reloadForUnknownBit() {
+        long last = lastUnknownBitReload.get();
+        long now = System.nanoTime();
+        if (now - last < unknownBitReloadInterval.toNanos() || !lastUnknownBitReload.compareAndSet(last, now)) {
+            return false;
+        }
+        log.info("Access token carries an unknown role bit, reloading the role bitmap");
+        reloadRoles();
+        return true;
+    }
+
+    /**
+     * Shared immutable authorities for a role list, so authenticated requests do not allocate them
+     */
+    public List<GrantedAuthority> authorities(List<String> roles) {
+        List<GrantedAuthority> cached = authoritiesByRoles.get(roles);
+        if (cached != null) {
+            return cached;
+        }
+        List<GrantedAuthority> authorities = roles.stream()
+            .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+            .toList();
+        if (authoritiesByRoles.size() < MAX_CACHED_COMBINATIONS) {
+            authoritiesByRoles.putIfAbsent(List.copyOf(roles), authorities);
+        }
+        return authorities;
+    }
+
+    /**
+     * Published bit-to-role mapping so other services can decode the rb claim
+     */
+    public Map<String, Object> describe() {
+        Map<String, String> roles = new LinkedHashMap<>();
+        String[] names = rolesByBit;
+        for (int bit = 0; bit < names.length; bit++) {
+            if (names[bit] != null) {
+                roles.put(String.valueOf(bit), names[bit]);
+            }
+        }
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("version", VERSION);
+        description.put("versionClaim", JwtUtil.CLAIM_ROLE_BITMAP_VERSION);
+        description.put("claim", JwtUtil.CLAIM_ROLE_BITMAP);
+        description.put("roles", roles);
+        return description;
+    }
+}
@@ -0,0 +1,30 @@
+package com.yarago.auth.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests of raw tokens
+ * Refresh tokens are stored and looked up by this 32-byte digest, never by the token itself
+ */
+public final class TokenHashing {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private TokenHashing() {
+    }
+
+    /**
+     * SHA-256 of the token's UTF-8 bytes, matching sha256(convert_to(token, 'UTF8')) in Postgres
+     */
+    public static byte[] sha256(String token) {
+        return SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,156 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.entity.DeletedUserTokenEpoch;
+import com.yarago.auth.repository.DeletedUserTokenEpochRepository;
+import com.yarago.auth.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-user "tokens valid after" epochs for stateless authentication
+ * Lockouts, deactivations, password changes and changes to the claims tokens carry move the epoch
+ * forward so that access tokens issued before the change are rejected without loading the user.
+ * Each epoch is written to users.tokens_not_before (deleted_user_token_epochs once the user is deleted),
+ * which seeds a node at startup, and published
+ * on a Redis channel so every running node applies it at once.
+ * Tokens carry iat in whole seconds, so an epoch is the second after the change: a token issued
+ * earlier in the same second is rejected, at the cost of also rejecting one issued later in that
+ * second, whose holder signs in again
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenValidityService {
+
+    private final UserRepository userRepository;
+    private final DeletedUserTokenEpochRepository deletedUserTokenEpochRepository;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${jwt.access-token-expiration}")
+    private Long accessTokenExpiration; // milliseconds
+
+    @Value("${auth.token-validity.channel:auth:token-validity}")
+    private String channel;
+
+    // userId -> first epoch second at which issued access tokens are accepted again
+    private final ConcurrentMap<Long, Long> notBeforeByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribe to epochs published by other nodes, then seed those persisted within the lifetime
+     * of a live access token. Subscribing first means an epoch moved during the seed is not missed
+     */
+    @PostConstruct
+    void loadRecentChanges() {
+        listenerContainer.addMessageListener(this::onEpochPublished, new ChannelTopic(channel));
+
+        LocalDateTime since = LocalDateTime.now().minusNanos(accessTokenExpiration * 1_000_000);
+        userRepository.findTokenEpochsSince(since).forEach(epoch ->
+            apply(epoch.getId(), notBeforeSecond(epoch.getTokensNotBefore())));
+        deletedUserTokenEpochRepository.findByTokensNotBeforeAfter(since).forEach(epoch ->
+            apply(epoch.getUserId(), notBeforeSecond(epoch.getTokensNotBefore())));
+        log.info("Loaded token validity epochs for {} users", notBeforeByUser.size());
+    }
+
+    /**
+     * Check whether a token issued at the given time is still acceptable for the user
+     */
+    public boolean isTokenCurrent(Long userId, Date issuedAt) {
+        if (userId == null || issuedAt == null) {
+            return false;
+        }
+        Long notBefore = notBeforeByUser.get(userId);
+        return notBefore == null || issuedAt.getTime() / 1000 >= notBefore;
+    }
+
+    /**
+     * Reject every access token the user currently holds
+     */
+    public void invalidateUserTokens(Long userId) {
+        invalidateTokensIssuedBefore(userId, LocalDateTime.now());
+    }
+
+    /**
+     * Reject access tokens for the user that were issued before the given time, on every node
+     * The epoch is persisted in the caller's transaction when there is one
+     */
+    public void invalidateTokensIssuedBefore(Long userId, LocalDateTime changedAt) {
+        userRepository.advanceTokensNotBefore(userId, changedAt);
+        broadcast(userId, changedAt);
+    }
+
+    /**
+     * Reject every access token of a user about to be deleted, on every node
+     * Must run in the deleting transaction, the epoch is kept apart from the users row it outlives
+     */
+    @Transactional
+    public void invalidateDeletedUserTokens(Long userId) {
+        LocalDateTime changedAt = LocalDateTime.now();
+        deletedUserTokenEpochRepository.deleteExpired(changedAt.minusNanos(accessTokenExpiration * 1_000_000));
+        deletedUserTokenEpochRepository.save(new DeletedUserTokenEpoch(userId, changedAt));
+        broadcast(userId, changedAt);
+    }
+
+    private void broadcast(Long userId, LocalDateTime changedAt) {
+        long notBefore = notBeforeSecond(changedAt);
+        apply(userId, notBefore);
+        try {
+            redisTemplate.convertAndSend(channel, userId + ":" + notBefore);
+        } catch (DataAccessException e) {
+            log.warn("Could not publish token validity epoch for user {}, other nodes accept older tokens until they expire: {}",
+                userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Apply an epoch published by any node, including this one
+     */
+    private void onEpochPublished(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.US_ASCII);
+        int separator = body.indexOf(':');
+        try {
+            apply(Long.parseLong(body, 0, separator, 10), Long.parseLong(body, separator + 1, body.length(), 10));
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            log.warn("Ignoring malformed token validity epoch: {}", body);
+        }
+    }
+
+    private void apply(Long userId, long notBefore) {
+        notBeforeByUser.merge(userId, notBefore, Math::max);
+        verifiedTokenCache.evictUser(userId);
+        pruneExpiredEpochs();
+    }
+
+    /**
+     * The whole second after the change, the first iat that cannot belong to a token issued before it
+     */
+    private static long notBeforeSecond(LocalDateTime changedAt) {
+        return changedAt.atZone(ZoneId.systemDefault()).toEpochSecond() + 1;
+    }
+
+    /**
+     * Drop epochs older than the access token lifetime, every token they guard has expired
+     */
+    private void pruneExpiredEpochs() {
+        long cutoff = Instant.now().minusMillis(accessTokenExpiration).getEpochSecond();
+        notBeforeByUser.values().removeIf(notBefore -> notBefore < cutoff);
+    }
+}
@@ -0,0 +1,255 @@
+package com.yarago.auth.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache of resolved user details, keyed by the login identifier (username or email)
+ * L1 is a bounded in-process Caffeine cache, L2 is Redis shared by every node.
+ * Evictions clear both tiers synchronously, again after the surrounding transaction commits,
+ * and are published on a Redis channel so other nodes drop their L1 entries.
+ * Every eviction also bumps a generation, per identifier in Redis and per node locally; a lookup
+ * that loaded before an eviction finds the generation moved and does not write its stale result back.
+ * The short L1 TTL bounds staleness if a pub/sub message is lost
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserDetailsCache {
+
+    private static final TypeReference<List<String>> IDENTIFIERS = new TypeReference<>() {
+    };
+
+    // KEYS[1] entry, KEYS[2] generation; ARGV[1] generation read before loading, ARGV[2] json, ARGV[3] ttl ms
+    private static final RedisScript<Long> WRITE_IF_CURRENT = RedisScript.of(
+        "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end " +
+        "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) " +
+        "return 1",
+        Long.class);
+
+    // KEYS[1] entry, KEYS[2] generation; ARGV[1] generation ttl ms
+    private static final RedisScript<Long> INVALIDATE = RedisScript.of(
+        "redis.call('DEL', KEYS[1]) " +
+        "local generation = redis.call('INCR', KEYS[2]) " +
+        "redis.call('PEXPIRE', KEYS[2], ARGV[1]) " +
+        "return generation",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.user-details-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.user-details-cache.local-maximum-size:10000}")
+    private long localMaximumSize;
+
+    @Value("${auth.user-details-cache.local-ttl:60s}")
+    private Duration localTtl;
+
+    @Value("${auth.user-details-cache.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    @Value("${auth.user-details-cache.redis-ttl:30m}")
+    private Duration redisTtl;
+
+    @Value("${auth.user-details-cache.redis-key-prefix:auth:user-details:}")
+    private String redisKeyPrefix;
+
+    @Value("${auth.user-details-cache.invalidation-channel:auth:user-details:invalidations}")
+    private String invalidationChannel;
+
+    private Cache<String, CachedUserDetails> localCache;
+
+    // Bumped before every local eviction, a lookup that sees it move drops what it just cached
+    private final AtomicLong localGeneration = new AtomicLong();
+
+    @PostConstruct
+    void initCache() {
+        if (!enabled) {
+            return;
+        }
+        localCache = Caffeine.newBuilder()
+            .maximumSize(localMaximumSize)
+            .expireAfterWrite(localTtl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "auth.user-details");
+
+        if (redisEnabled) {
+            listenerContainer.addMessageListener(this::onInvalidation, new ChannelTopic(invalidationChannel));
+        }
+    }
+
+    /**
+     * Return cached user details, reading through L1, L2 and finally the loader
+     * The loader throws for unknown users, those lookups are never cached
+     */
+    public CachedUserDetails get(String identifier, Function<String, CachedUserDetails> loader) {
+        if (localCache == null) {
+            return loader.apply(identifier);
+        }
+
+        CachedUserDetails cached = localCache.getIfPresent(identifier);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = localGeneration.get();
+        List<String> remote = readRemote(identifier);
+        cached = remote != null ? parse(identifier, remote.get(0)) : null;
+        if (cached == null) {
+            cached = loader.apply(identifier);
+            if (remote != null) {
+                writeRemote(identifier, cached, remote.get(1));
+            }
+        }
+
+        // Put first and check after, an eviction that ran in between is seen and undone here
+        localCache.put(identifier, cached);
+        if (localGeneration.get() != generation) {
+            localCache.invalidate(identifier);
+        }
+        return cached;
+    }
+
+    /**
+     * Drop a user's entries under every identifier they can log in with, on all nodes
+     * Repeated after commit so a concurrent read of the old row cannot repopulate the cache
+     */
+    public void evict(String... identifiers) {
+        if (localCache == null) {
+            return;
+        }
+        List<String> keys = Arrays.stream(identifiers).filter(Objects::nonNull).distinct().toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        evictEverywhere(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictEverywhere(keys);
+                }
+            });
+        }
+    }
+
+    private void evictEverywhere(List<String> identifiers) {
+        evictLocal(identifiers);
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            String ttl = String.valueOf(redisTtl.toMillis());
+            identifiers.forEach(identifier ->
+                redisTemplate.execute(INVALIDATE, List.of(redisKey(identifier), generationKey(identifier)), ttl));
+            redisTemplate.convertAndSend(invalidationChannel, objectMapper.writeValueAsString(identifiers));
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Could not propagate user details eviction for {}: {}", identifiers, e.getMessage());
+        }
+    }
+
+    /**
+     * Evict L1 entries named in an invalidation published by any node, including this one
+     */
+    private void onInvalidation(Message message, byte[] pattern) {
+        try {
+            List<String> identifiers = objectMapper.readValue(
+                new String(message.getBody(), StandardCharsets.UTF_8), IDENTIFIERS);
+            evictLocal(identifiers);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed user details invalidation: {}", e.getMessage());
+        }
+    }
+
+    private void evictLocal(List<String> identifiers) {
+        localGeneration.incrementAndGet();
+        localCache.invalidateAll(identifiers);
+    }
+
+    /**
+     * The cached json (or null) and the generation it may be replaced under, null when L2 is unavailable
+     */
+    private List<String> readRemote(String identifier) {
+        if (!redisEnabled) {
+            return null;
+        }
+        try {
+            List<String> values = redisTemplate.opsForValue()
+                .multiGet(List.of(redisKey(identifier), generationKey(identifier)));
+            if (values == null) {
+                return null;
+            }
+            return Arrays.asList(values.get(0), values.get(1) != null ? values.get(1) : "0");
+        } catch (DataAccessException e) {
+            log.debug("User details L2 read failed for {}: {}", identifier, e.getMessage());
+            return null;
+        }
+    }
+
+    private CachedUserDetails parse(String identifier, String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, CachedUserDetails.class);
+        } catch (JsonProcessingException e) {
+            log.debug("User details L2 entry unreadable for {}: {}", identifier, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the entry only if no eviction bumped the generation since it was read
+     */
+    private void writeRemote(String identifier, CachedUserDetails userDetails, String generation) {
+        try {
+            redisTemplate.execute(WRITE_IF_CURRENT, List.of(redisKey(identifier), generationKey(identifier)),
+                generation, objectMapper.writeValueAsString(userDetails), String.valueOf(redisTtl.toMillis()));
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.debug("User details L2 write failed for {}: {}", identifier, e.getMessage());
+        }
+    }
+
+    /**
+     * Entry and generation keys share a hash tag so the scripts touch a single slot
+     */
+    private String redisKey(String identifier) {
+        return redisKeyPrefix + "{" + identifier + "}";
+    }
+
+    private String generationKey(String identifier) {
+        return redisKeyPrefix + "{" + identifier + "}:generation";
+    }
+}
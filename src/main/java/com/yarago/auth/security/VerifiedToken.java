@@ -0,0 +1,37 @@
+package com.yarago.auth.security;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Claims of a JWT whose signature and expiry were checked once by JwtUtil
+ * Passed through the filter pipeline and services instead of re-parsing the raw token
+ */
+@Value
+@Builder
+public class VerifiedToken {
+
+    String subject;
+    Date issuedAt;
+    Date expiration;
+    Long userId;
+    Long branchId;
+    List<String> roles;
+    String type;
+    // Refresh tokens only: token family and the generation within it
+    String familyId;
+    Integer generation;
+    // Digest of the jti claim for the access token denylist, 0 when the token has none
+    long jtiKey;
+
+    public boolean isRefreshToken() {
+        return JwtUtil.TOKEN_TYPE_REFRESH.equals(type);
+    }
+
+    public boolean isExpired() {
+        return expiration.before(new Date());
+    }
+}
@@ -0,0 +1,116 @@
+package com.yarago.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of verified access tokens
+ * Keyed by the SHA-256 of the raw token so a hit can only be produced by the exact token that was verified.
+ * Entries expire at the token's exp and are dropped on logout, revocation and key rotation
+ */
+@Component
+@RequiredArgsConstructor
+public class VerifiedTokenCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.verified-token-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jwt.verified-token-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    private Cache<TokenDigest, VerifiedToken> cache;
+
+    @PostConstruct
+    void initCache() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(Expiry.creating((TokenDigest digest, VerifiedToken token) ->
+                Duration.ofMillis(Math.max(0, token.getExpiration().getTime() - System.currentTimeMillis()))))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    /**
+     * Return the cached verification of a token, verifying and caching it on a miss
+     * The verifier returns null for tokens that fail verification, those are never cached
+     */
+    public Optional<VerifiedToken> get(String token, Function<String, VerifiedToken> verifier) {
+        if (cache == null) {
+            return Optional.ofNullable(verifier.apply(token));
+        }
+
+        TokenDigest digest = TokenDigest.of(token);
+        VerifiedToken cached = cache.getIfPresent(digest);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        VerifiedToken verified = verifier.apply(token);
+        // Refresh tokens are verified once per refresh call, caching them only displaces access tokens
+        if (verified != null && !verified.isRefreshToken()) {
+            cache.put(digest, verified);
+        }
+        return Optional.ofNullable(verified);
+    }
+
+    /**
+     * Drop every cached token of a user after logout or revocation
+     */
+    public void evictUser(Long userId) {
+        if (cache != null) {
+            cache.asMap().values().removeIf(token -> userId.equals(token.getUserId()));
+        }
+    }
+
+    /**
+     * Drop all cached tokens, used when verification keys change
+     */
+    public void evictAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 256-bit token digest held as four longs to keep keys small and comparisons cheap
+     */
+    @EqualsAndHashCode
+    private static final class TokenDigest {
+
+        private final long d0;
+        private final long d1;
+        private final long d2;
+        private final long d3;
+
+        private TokenDigest(byte[] digest) {
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            this.d0 = buffer.getLong(0);
+            this.d1 = buffer.getLong(8);
+            this.d2 = buffer.getLong(16);
+            this.d3 = buffer.getLong(24);
+        }
+
+        static TokenDigest of(String token) {
+            return new TokenDigest(TokenHashing.sha256(token));
+        }
+    }
+}
@@ -1,28 +1,39 @@
 package com.yarago.auth.service;
 
 import com.yarago.auth.dto.*;
-import com.yarago.auth.entity.RefreshToken;
 import com.yarago.auth.entity.Role;
 import com.yarago.auth.entity.User;
-import com.yarago.auth.repository.RefreshTokenRepository;
 import com.yarago.auth.repository.RoleRepository;
 import com.yarago.auth.repository.UserRepository;
+import com.yarago.auth.security.AccessTokenDenylist;
+import com.yarago.auth.security.FailedLoginCounter;
 import com.yarago.auth.security.JwtUtil;
+import com.yarago.auth.security.LoginIdentifierFilter;
+import com.yarago.auth.security.RefreshSession;
+import com.yarago.auth.security.RefreshTokenStore;
+import com.yarago.auth.security.TokenHashing;
+import com.yarago.auth.security.TokenValidityService;
+import com.yarago.auth.security.UserDetailsCache;
+import com.yarago.auth.security.VerifiedToken;
+import com.yarago.auth.security.VerifiedTokenCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
@@ -36,67 +47,99 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenStore refreshTokenStore;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
-    private final AuthenticationManager authenticationManager;
-    private final UserDetailsService userDetailsService;
+    private final TokenValidityService tokenValidityService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final UserDetailsCache userDetailsCache;
+    private final TransactionTemplate transactionTemplate;
+    private final LoginActivityBuffer loginActivityBuffer;
+    private final FailedLoginCounter failedLoginCounter;
+    private final LoginIdentifierFilter loginIdentifierFilter;
+    private final AccessTokenDenylist accessTokenDenylist;
+
+    @Value("${auth.login-lockout.max-attempts:5}")
+    private int maxLoginAttempts;
+
+    @Value("${auth.refresh-token.reuse-grace-period:30s}")
+    private Duration reuseGracePeriod;
 
-    private static final int MAX_LOGIN_ATTEMPTS = 5;
     private static final int MAX_ACTIVE_SESSIONS = 5;
 
+    private volatile String dummyPasswordHash;
+
     /**
      * Authenticate user and generate tokens
      * Supports login with both username and email
+     * The user and roles are loaded once and reused for the lockout check, password match and token.
+     * Not transactional: the BCrypt check runs with no pooled connection checked out,
+     * the writes after it use their own short transactions
      */
-    @Transactional
     public AuthResponse login(LoginRequest request) {
-        // Find user by username or email
-        User user = userRepository.findByUsernameOrEmail(request.getUsername())
-            .orElseThrow(() -> new BadCredentialsException("Invalid username or password"));
+        // Identifiers neither the filter nor the shared record of recent additions has seen cannot match a user
+        User user = null;
+        if (loginIdentifierFilter.mightContain(request.getUsername())) {
+            // Find user by username or email, roles are fetched in the same statement
+            user = userRepository.findForLogin(request.getUsername()).orElse(null);
+        }
+
+        if (user == null || !user.getActive()) {
+            // Spend a hash on unknown and inactive accounts too so response times do not reveal them
+            passwordEncoder.matches(request.getPassword(), dummyPasswordHash());
+            if (user != null) {
+                recordFailedLogin(user);
+            }
+            throw new BadCredentialsException("Invalid username or password");
+        }
 
         // Check if account is locked
         if (user.getAccountLocked()) {
             throw new BadCredentialsException("Account is locked due to multiple failed login attempts");
         }
 
-        try {
-            // Authenticate using the identifier (username or email)
-            // CustomUserDetailsService will handle finding the user by username or email
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
-            );
-
-            // Reset failed attempts on successful login
-            user.setFailedLoginAttempts(0);
-            user.setLastLoginAt(LocalDateTime.now());
-            userRepository.save(user);
+        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+            // Increment failed login attempts
+            recordFailedLogin(user);
+            throw new BadCredentialsException("Invalid username or password");
+        }
 
-            // Load user details
-            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        // Rehash before the write transaction when the stored hash predates the hashing policy
+        String upgradedPassword = passwordEncoder.upgradeEncoding(user.getPassword())
+            ? passwordEncoder.encode(request.getPassword())
+            : null;
 
-            // Generate tokens
-            String accessToken = jwtUtil.generateAccessToken(userDetails, user.getId(), user.getBranchId());
-            String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
+        // Generate tokens
+        String accessToken = jwtUtil.generateAccessToken(
+            user.getUsername(), roleNames(user), user.getId(), user.getBranchId());
+        IssuedRefreshToken refreshToken = issueRefreshToken(user.getUsername());
+
+        // Reset failed attempts on successful login
+        failedLoginCounter.reset(user.getId());
+
+        if (upgradedPassword != null) {
+            Integer replaced = transactionTemplate.execute(status ->
+                userRepository.replacePasswordHash(user.getUsername(), user.getPassword(), upgradedPassword));
+            if (replaced != null && replaced > 0) {
+                userDetailsCache.evict(user.getUsername(), user.getEmail());
+            }
+        }
 
-            // Save refresh token
-            saveRefreshToken(user, refreshToken, request.getIpAddress(), request.getUserAgent());
+        // Save refresh token
+        saveRefreshToken(user, refreshToken, request.getIpAddress(), request.getUserAgent());
 
-            log.info("User {} logged in successfully", user.getUsername());
+        // last_login_at is bookkeeping, written behind in coalesced batches
+        loginActivityBuffer.recordLogin(user.getId(), LocalDateTime.now());
 
-            return buildAuthResponse(accessToken, refreshToken, user);
+        log.info("User {} logged in successfully", user.getUsername());
 
-        } catch (BadCredentialsException e) {
-            // Increment failed login attempts
-            handleFailedLogin(user);
-            throw new BadCredentialsException("Invalid username or password");
-        }
+        return buildAuthResponse(accessToken, refreshToken.token(), user);
     }
 
     /**
      * Register new user
+     * The password is hashed before the insert transaction opens
      */
-    @Transactional
     public AuthResponse register(RegisterRequest request) {
         // Validate username uniqueness
         if (userRepository.existsByUsername(request.getUsername())) {
@@ -108,11 +151,28 @@ public class AuthService {
             throw new IllegalArgumentException("Email already exists");
         }
 
+        // Resolve roles before hashing so an invalid request does not cost a BCrypt round
+        Set<Role> roles = new HashSet<>();
+        if (request.getRoleIds() != null && !request.getRoleIds().isEmpty()) {
+            for (Long roleId : request.getRoleIds()) {
+                Role role = roleRepository.findById(roleId)
+                    .orElseThrow(() -> new IllegalArgumentException("Role not found: " + roleId));
+                roles.add(role);
+            }
+        } else {
+            // Default role: RECEPTIONIST
+            Role defaultRole = roleRepository.findByName("ROLE_RECEPTIONIST")
+                .orElseThrow(() -> new IllegalStateException("Default role not found"));
+            roles.add(defaultRole);
+        }
+
+        String encodedPassword = passwordEncoder.encode(request.getPassword());
+
         // Create user
         User user = new User();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail()); // Will be encrypted by service layer
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(encodedPassword);
         user.setFirstName(request.getFirstName()); // Will be encrypted
         user.setLastName(request.getLastName()); // Will be encrypted
         user.setPhoneNumber(request.getPhoneNumber()); // Will be encrypted
@@ -126,68 +186,77 @@ public class AuthService {
         user.setPasswordChangedAt(LocalDateTime.now());
 
         // Assign roles
-        if (request.getRoleIds() != null && !request.getRoleIds().isEmpty()) {
-            Set<Role> roles = new HashSet<>();
-            for (Long roleId : request.getRoleIds()) {
-                Role role = roleRepository.findById(roleId)
-                    .orElseThrow(() -> new IllegalArgumentException("Role not found: " + roleId));
-                roles.add(role);
-            }
-            user.setRoles(roles);
-        } else {
-            // Default role: RECEPTIONIST
-            Role defaultRole = roleRepository.findByName("ROLE_RECEPTIONIST")
-                .orElseThrow(() -> new IllegalStateException("Default role not found"));
-            user.getRoles().add(defaultRole);
-        }
+        user.setRoles(roles);
 
-        user = userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        loginIdentifierFilter.add(savedUser.getUsername(), savedUser.getEmail());
 
         // Generate tokens
-        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String accessToken = jwtUtil.generateAccessToken(userDetails, user.getId(), user.getBranchId());
-        String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
+        String accessToken = jwtUtil.generateAccessToken(
+            savedUser.getUsername(), roleNames(savedUser), savedUser.getId(), savedUser.getBranchId());
+        IssuedRefreshToken refreshToken = issueRefreshToken(savedUser.getUsername());
 
         // Save refresh token
-        saveRefreshToken(user, refreshToken, null, null);
+        saveRefreshToken(savedUser, refreshToken, null, null);
 
-        log.info("User {} registered successfully", user.getUsername());
+        log.info("User {} registered successfully", savedUser.getUsername());
 
-        return buildAuthResponse(accessToken, refreshToken, user);
+        return buildAuthResponse(accessToken, refreshToken.token(), savedUser);
     }
 
     /**
      * Refresh access token using refresh token
+     * Rotates the refresh token: the presented generation of the family is retired and the next one returned.
+     * A retired generation presented again within the grace period gets a twin of the current generation,
+     * so tabs refreshing concurrently keep working; presented later it is treated as theft and the family
+     * is revoked. Not transactional: every store operation is atomic on its own, so a revocation
+     * stands even though the request then fails.
+     * The session, its user and roles come from one fetch-joined statement, the active and lock checks
+     * run on that result rather than reloading the user through the UserDetailsService
      */
-    @Transactional
     public AuthResponse refreshToken(RefreshTokenRequest request) {
         String refreshTokenValue = request.getRefreshToken();
 
-        // Validate refresh token
-        if (!jwtUtil.validateToken(refreshTokenValue)) {
-            throw new BadCredentialsException("Invalid refresh token");
-        }
+        // Validate refresh token, signature and expiry are checked once here
+        VerifiedToken verified = jwtUtil.verifyToken(refreshTokenValue)
+            .filter(VerifiedToken::isRefreshToken)
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
 
-        // Find refresh token in database
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(refreshTokenValue)
+        // Find the token family, tokens issued before rotation carry no family and are found by digest
+        RefreshSession session = (verified.getFamilyId() != null
+                ? refreshTokenStore.findByFamilyId(UUID.fromString(verified.getFamilyId()))
+                : refreshTokenStore.findByTokenHash(TokenHashing.sha256(refreshTokenValue)))
             .orElseThrow(() -> new BadCredentialsException("Refresh token not found"));
 
         // Check if token is valid
-        if (!refreshToken.isValid()) {
+        if (!session.isValid(LocalDateTime.now())) {
             throw new BadCredentialsException("Refresh token is expired or revoked");
         }
 
-        User user = refreshToken.getUser();
+        // Stores that cannot join users return only the id, load the user and roles in one statement then
+        User user = session.getUser() != null
+            ? session.getUser()
+            : userRepository.findWithRolesById(session.getUserId())
+                .orElseThrow(() -> new BadCredentialsException("Refresh token not found"));
+        if (!user.getActive()) {
+            throw new BadCredentialsException("User account is inactive");
+        }
+        if (user.getAccountLocked()) {
+            throw new BadCredentialsException("Account is locked due to multiple failed login attempts");
+        }
+
+        int presentedGeneration = verified.getGeneration() != null ? verified.getGeneration() : session.getGeneration();
+        String newRefreshToken = rotateRefreshToken(user.getUsername(), session, presentedGeneration);
 
         // Generate new access token
-        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String newAccessToken = jwtUtil.generateAccessToken(userDetails, user.getId(), user.getBranchId());
+        String newAccessToken = jwtUtil.generateAccessToken(
+            user.getUsername(), roleNames(user), user.getId(), user.getBranchId());
 
         log.info("Access token refreshed for user {}", user.getUsername());
 
         return AuthResponse.builder()
             .accessToken(newAccessToken)
-            .refreshToken(refreshTokenValue) // Return same refresh token
+            .refreshToken(newRefreshToken)
             .tokenType("Bearer")
             .expiresIn(jwtUtil.getAccessTokenExpirationInSeconds())
             .user(buildUserInfo(user))
@@ -196,53 +265,115 @@ public class AuthService {
 
     /**
      * Logout user and revoke tokens
+     * The presented access token is denied on every node until it expires
      */
     @Transactional
-    public void logout(String username) {
+    public void logout(String username, VerifiedToken accessToken) {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
         // Revoke all refresh tokens
-        refreshTokenRepository.revokeAllUserTokens(user, LocalDateTime.now());
+        refreshTokenStore.revokeAllForUser(user.getId(), LocalDateTime.now());
+        verifiedTokenCache.evictUser(user.getId());
+        if (accessToken != null) {
+            accessTokenDenylist.revoke(accessToken);
+        }
 
         log.info("User {} logged out", username);
     }
 
     /**
-     * Save refresh token to database
+     * Swap the family to the generation after the presented one
+     * The swap is a compare-and-set in the store, a request that loses the race re-reads the family and
+     * is answered by the grace period like any other concurrent refresh
      */
-    private void saveRefreshToken(User user, String token, String ipAddress, String userAgent) {
-        // Check active sessions limit
-        long activeSessionsCount = refreshTokenRepository.countValidTokensByUser(user, LocalDateTime.now());
-        if (activeSessionsCount >= MAX_ACTIVE_SESSIONS) {
-            // Revoke oldest tokens
-            refreshTokenRepository.revokeAllUserTokens(user, LocalDateTime.now());
+    private String rotateRefreshToken(String username, RefreshSession session, int presentedGeneration) {
+        UUID familyId = session.getFamilyId();
+        Date familyExpiresAt = Date.from(session.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant());
+        LocalDateTime now = LocalDateTime.now();
+
+        if (presentedGeneration == session.getGeneration()) {
+            String next = jwtUtil.generateRefreshToken(username, familyId, presentedGeneration + 1, familyExpiresAt);
+            if (refreshTokenStore.rotate(familyId, presentedGeneration, TokenHashing.sha256(next), now)) {
+                return next;
+            }
+            session = refreshTokenStore.findByFamilyId(familyId)
+                .filter(family -> family.isValid(now))
+                .orElseThrow(() -> new BadCredentialsException("Refresh token is expired or revoked"));
         }
 
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setToken(token);
-        refreshToken.setUser(user);
-        refreshToken.setExpiresAt(LocalDateTime.now().plusSeconds(jwtUtil.getRefreshTokenExpirationInSeconds()));
-        refreshToken.setRevoked(false);
-        refreshToken.setIpAddress(ipAddress);
-        refreshToken.setUserAgent(userAgent);
+        if (presentedGeneration == session.getGeneration() - 1 && session.getRotatedAt() != null
+                && !session.getRotatedAt().isBefore(now.minus(reuseGracePeriod))) {
+            return jwtUtil.generateRefreshToken(username, familyId, session.getGeneration(), familyExpiresAt);
+        }
 
-        refreshTokenRepository.save(refreshToken);
+        refreshTokenStore.revokeFamily(familyId, now);
+        log.warn("Refresh token reuse detected for user {}: generation {} presented, family at {}, family revoked",
+            username, presentedGeneration, session.getGeneration());
+        throw new BadCredentialsException("Refresh token has already been used");
+    }
+
+    /**
+     * Start a token family at generation 0 with the full refresh token lifetime
+     */
+    private IssuedRefreshToken issueRefreshToken(String username) {
+        UUID familyId = UUID.randomUUID();
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(jwtUtil.getRefreshTokenExpirationInSeconds())
+            .truncatedTo(ChronoUnit.SECONDS);
+        String token = jwtUtil.generateRefreshToken(username, familyId, 0,
+            Date.from(expiresAt.atZone(ZoneId.systemDefault()).toInstant()));
+        return new IssuedRefreshToken(token, familyId, expiresAt);
+    }
+
+    /**
+     * Save refresh token, the store evicts the user's oldest sessions beyond the limit
+     */
+    private void saveRefreshToken(User user, IssuedRefreshToken token, String ipAddress, String userAgent) {
+        refreshTokenStore.save(RefreshSession.builder()
+            .familyId(token.familyId())
+            .userId(user.getId())
+            .tokenHash(TokenHashing.sha256(token.token()))
+            .generation(0)
+            .expiresAt(token.expiresAt())
+            .ipAddress(ipAddress)
+            .userAgent(userAgent)
+            .createdAt(LocalDateTime.now())
+            .build(), MAX_ACTIVE_SESSIONS);
     }
 
     /**
      * Handle failed login attempts
+     * Failures are counted in a sliding window off the users row, which is written only to lock
      */
-    private void handleFailedLogin(User user) {
-        int attempts = user.getFailedLoginAttempts() + 1;
-        user.setFailedLoginAttempts(attempts);
+    private void recordFailedLogin(User user) {
+        int failures = failedLoginCounter.recordFailure(user.getId());
+        if (failures < maxLoginAttempts) {
+            return;
+        }
+
+        // Conditional update, only the attempt that flips the flag sees a changed row
+        Integer locked = transactionTemplate.execute(status -> userRepository.lockAccount(user.getId(), failures));
+        if (locked != null && locked > 0) {
+            tokenValidityService.invalidateUserTokens(user.getId());
+            userDetailsCache.evict(user.getUsername(), user.getEmail());
+            log.warn("Account locked for user {} after {} failed login attempts", user.getUsername(), failures);
+        }
+    }
 
-        if (attempts >= MAX_LOGIN_ATTEMPTS) {
-            user.setAccountLocked(true);
-            log.warn("Account locked for user {} due to {} failed login attempts", user.getUsername(), attempts);
+    /**
+     * Hash of a random password, matched against when the account does not exist
+     */
+    private String dummyPasswordHash() {
+        String hash = dummyPasswordHash;
+        if (hash == null) {
+            hash = passwordEncoder.encode(UUID.randomUUID().toString());
+            dummyPasswordHash = hash;
         }
+        return hash;
+    }
 
-        userRepository.save(user);
+    private List<String> roleNames(User user) {
+        return user.getRoles().stream().map(Role::getName).toList();
     }
 
     /**
@@ -277,4 +408,10 @@ public class AuthService {
             .active(user.getActive())
             .build();
     }
+
+    /**
+     * A freshly started token family and its first token
+     */
+    private record IssuedRefreshToken(String token, UUID familyId, LocalDateTime expiresAt) {
+    }
 }
@@ -0,0 +1,101 @@
+package com.yarago.auth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Write-behind buffer for users.last_login_at
+ * Logins record the time in memory, keeping only the latest value per user, and a scheduled
+ * task writes them in JDBC batches that touch one column. Pending values are flushed on
+ * graceful shutdown; a crash loses at most one interval of last-login times, nothing else
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginActivityBuffer {
+
+    private static final String UPDATE_LAST_LOGIN =
+        "UPDATE users SET last_login_at = ? WHERE id = ? AND (last_login_at IS NULL OR last_login_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.login-activity.batch-size:500}")
+    private int batchSize;
+
+    // userId -> latest login time not yet written
+    private final ConcurrentMap<Long, LocalDateTime> pendingLastLogins = new ConcurrentHashMap<>();
+
+    private Counter flushedRows;
+
+    @PostConstruct
+    void initMetrics() {
+        meterRegistry.gauge("auth.login.activity.pending", pendingLastLogins, Map::size);
+        flushedRows = Counter.builder("auth.login.activity.flushed")
+            .description("Buffered last-login times written to the users table")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Record a successful login, coalescing with any unwritten login of the same user
+     */
+    public void recordLogin(Long userId, LocalDateTime loginAt) {
+        pendingLastLogins.merge(userId, loginAt, (current, next) -> next.isAfter(current) ? next : current);
+    }
+
+    /**
+     * Write pending last-login times in batches
+     * An entry is removed only if no newer login replaced it while the batch ran, failed batches are retried
+     */
+    @Scheduled(fixedDelayString = "${auth.login-activity.flush-interval:5s}")
+    public void flush() {
+        if (pendingLastLogins.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, LocalDateTime>> pending = new ArrayList<>(pendingLastLogins.size());
+        pendingLastLogins.forEach((userId, loginAt) -> pending.add(Map.entry(userId, loginAt)));
+
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Map.Entry<Long, LocalDateTime>> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN, batch, batch.size(), (statement, entry) -> {
+                    Timestamp loginAt = Timestamp.valueOf(entry.getValue());
+                    statement.setTimestamp(1, loginAt);
+                    statement.setLong(2, entry.getKey());
+                    statement.setTimestamp(3, loginAt);
+                });
+            } catch (DataAccessException e) {
+                log.warn("Could not flush {} last-login times, retrying next interval: {}", batch.size(), e.getMessage());
+                return;
+            }
+            batch.forEach(entry -> pendingLastLogins.remove(entry.getKey(), entry.getValue()));
+            flushedRows.increment(batch.size());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+        if (!pendingLastLogins.isEmpty()) {
+            log.warn("Dropped {} unwritten last-login times on shutdown", pendingLastLogins.size());
+        }
+    }
+}
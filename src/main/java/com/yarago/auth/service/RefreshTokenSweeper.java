@@ -0,0 +1,254 @@
+package com.yarago.auth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reclaims expired refresh tokens
+ * With refresh_tokens partitioned by expires_at it creates daily partitions ahead of time and
+ * detaches and drops partitions whose whole range has expired, so no row is deleted one by one.
+ * On an unpartitioned table it falls back to deleting expired rows in bounded chunks.
+ * One node sweeps at a time, guarded by a Postgres advisory lock. Partitions are also made at startup
+ * and whichever refresh token store is selected, so switching stores back to jpa finds them in place.
+ * There is no default partition: a session expiring past the last partition cannot be inserted, so
+ * coverage is published as a gauge and logged as an error once it is less than min-coverage-days
+ * beyond the refresh token lifetime
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenSweeper {
+
+    private static final long SWEEP_LOCK_KEY = 0x7265667265736801L;
+    private static final String PARTITION_PREFIX = "refresh_tokens_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "(\\d{8})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final String MODE_PARTITION = "partition";
+    private static final String MODE_DELETE = "delete";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.refresh-token.sweep.retention:1d}")
+    private Duration retention;
+
+    @Value("${auth.refresh-token.sweep.premake-days:14}")
+    private int premakeDays;
+
+    @Value("${auth.refresh-token.sweep.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${auth.refresh-token.sweep.min-coverage-days:3}")
+    private int minCoverageDays; // beyond the refresh token lifetime
+
+    @Value("${jwt.refresh-token-expiration}")
+    private long refreshTokenExpiration; // milliseconds
+
+    private Counter partitionsDropped;
+
+    // Exclusive upper bound of the last partition, null until checked or when the table is not partitioned
+    private volatile LocalDate coveredUntil;
+
+    @PostConstruct
+    void initMetrics() {
+        partitionsDropped = Counter.builder("auth.refresh.tokens.sweep.partitions.dropped")
+            .description("Expired refresh token partitions dropped")
+            .register(meterRegistry);
+        Gauge.builder("auth.refresh.tokens.partitions.coverage.days", this, RefreshTokenSweeper::coverageDays)
+            .description("Days ahead covered by refresh token partitions, inserts expiring later fail")
+            .baseUnit("days")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Make the coming days' partitions before the first login, whatever store is selected
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void premakeOnStartup() {
+        try {
+            withSweepLock(session -> {
+                if (isPartitioned(session)) {
+                    createUpcomingPartitions(session);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.error("Could not create refresh token partitions at startup: {}", e.getMessage());
+        }
+        checkCoverage();
+    }
+
+    /**
+     * Run one sweep, skipped when another node holds the sweep lock
+     */
+    @Scheduled(fixedDelayString = "${auth.refresh-token.sweep.interval:1h}",
+               initialDelayString = "${auth.refresh-token.sweep.initial-delay:1m}")
+    public void sweep() {
+        try {
+            withSweepLock(session -> {
+                boolean partitioned = isPartitioned(session);
+                String mode = partitioned ? MODE_PARTITION : MODE_DELETE;
+
+                long start = System.nanoTime();
+                long reclaimed = partitioned ? sweepPartitions(session) : deleteExpiredInChunks(session);
+                long elapsed = System.nanoTime() - start;
+
+                Timer.builder("auth.refresh.tokens.sweep.duration")
+                    .description("Time spent reclaiming expired refresh tokens")
+                    .tag("mode", mode)
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(elapsed));
+                Counter.builder("auth.refresh.tokens.sweep.reclaimed")
+                    .description("Expired refresh tokens reclaimed")
+                    .tag("mode", mode)
+                    .register(meterRegistry)
+                    .increment(reclaimed);
+
+                log.info("Refresh token sweep ({}) reclaimed {} rows in {} ms", mode, reclaimed, elapsed / 1_000_000);
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Refresh token sweep failed, retrying next interval: {}", e.getMessage());
+        }
+        checkCoverage();
+    }
+
+    /**
+     * Run work holding the sweep lock, skipped when another node holds it
+     * Advisory locks belong to the session, so lock, work and unlock on one connection
+     */
+    private void withSweepLock(Function<JdbcTemplate, Void> work) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            if (!Boolean.TRUE.equals(session.queryForObject("SELECT pg_try_advisory_lock(?)", Boolean.class, SWEEP_LOCK_KEY))) {
+                log.debug("Refresh token sweep already running on another node");
+                return null;
+            }
+            try {
+                return work.apply(session);
+            } finally {
+                session.queryForObject("SELECT pg_advisory_unlock(?)", Boolean.class, SWEEP_LOCK_KEY);
+            }
+        });
+    }
+
+    private static boolean isPartitioned(JdbcTemplate session) {
+        return Boolean.TRUE.equals(session.queryForObject(
+            "SELECT relkind = 'p' FROM pg_class WHERE oid = to_regclass('refresh_tokens')", Boolean.class));
+    }
+
+    /**
+     * Read how far ahead partitions reach, on every node whether or not it holds the lock
+     */
+    private void checkCoverage() {
+        try {
+            LocalDate until = null;
+            for (String name : jdbcTemplate.queryForList(
+                    "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                    "WHERE i.inhparent = to_regclass('refresh_tokens')", String.class)) {
+                Matcher matcher = PARTITION_NAME.matcher(name);
+                if (matcher.matches()) {
+                    LocalDate end = LocalDate.parse(matcher.group(1), PARTITION_SUFFIX).plusDays(1);
+                    until = until == null || end.isAfter(until) ? end : until;
+                }
+            }
+            coveredUntil = until;
+            long requiredDays = Duration.ofMillis(refreshTokenExpiration).toDays() + 1 + minCoverageDays;
+            if (until != null && coverageDays() < requiredDays) {
+                log.error("Refresh token partitions only reach {}, logins fail once new sessions expire beyond it; " +
+                    "check that the sweep is running", until);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not check refresh token partition coverage: {}", e.getMessage());
+        }
+    }
+
+    private double coverageDays() {
+        LocalDate until = coveredUntil;
+        return until != null ? ChronoUnit.DAYS.between(LocalDate.now(), until) : Double.NaN;
+    }
+
+    /**
+     * Create the partitions the coming days need and drop those that expired more than the retention ago
+     * Detaching concurrently keeps logins and refreshes running while a partition is removed
+     */
+    private long sweepPartitions(JdbcTemplate session) {
+        createUpcomingPartitions(session);
+
+        LocalDateTime droppableBefore = LocalDateTime.now().minus(retention);
+        long reclaimed = 0;
+        for (var partition : session.queryForList(
+                "SELECT c.relname AS name, i.inhdetachpending AS detach_pending FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'refresh_tokens'::regclass")) {
+            String name = (String) partition.get("name");
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches()) {
+                continue;
+            }
+            LocalDate day = LocalDate.parse(matcher.group(1), PARTITION_SUFFIX);
+            if (day.plusDays(1).atStartOfDay().isAfter(droppableBefore)) {
+                continue;
+            }
+
+            Long rows = session.queryForObject("SELECT COUNT(*) FROM " + name, Long.class);
+            // A detach interrupted by a failure or restart has to be finalized before it can be retried
+            session.execute("ALTER TABLE refresh_tokens DETACH PARTITION " + name +
+                (Boolean.TRUE.equals(partition.get("detach_pending")) ? " FINALIZE" : " CONCURRENTLY"));
+            session.execute("DROP TABLE " + name);
+
+            reclaimed += rows != null ? rows : 0;
+            partitionsDropped.increment();
+        }
+        return reclaimed;
+    }
+
+    private void createUpcomingPartitions(JdbcTemplate session) {
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day <= premakeDays; day++) {
+            LocalDate from = today.plusDays(day);
+            session.execute("CREATE TABLE IF NOT EXISTS " + PARTITION_PREFIX + from.format(PARTITION_SUFFIX) +
+                " PARTITION OF refresh_tokens FOR VALUES FROM ('" + from + "') TO ('" + from.plusDays(1) + "')");
+        }
+    }
+
+    /**
+     * Delete expired rows in chunks, each its own short statement, until a chunk comes back short
+     */
+    private long deleteExpiredInChunks(JdbcTemplate session) {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        long reclaimed = 0;
+        int deleted;
+        do {
+            deleted = session.update(
+                "DELETE FROM refresh_tokens WHERE id IN " +
+                "(SELECT id FROM refresh_tokens WHERE expires_at < ? LIMIT ?)", cutoff, chunkSize);
+            reclaimed += deleted;
+        } while (deleted == chunkSize);
+        return reclaimed;
+    }
+}
@@ -3,10 +3,15 @@ package com.yarago.auth.service;
 import com.yarago.auth.dto.CreateUserRequest;
 import com.yarago.auth.dto.UpdateUserRequest;
 import com.yarago.auth.dto.UserDTO;
+import com.yarago.auth.dto.UserPage;
 import com.yarago.auth.entity.Role;
 import com.yarago.auth.entity.User;
 import com.yarago.auth.repository.RoleRepository;
 import com.yarago.auth.repository.UserRepository;
+import com.yarago.auth.security.FailedLoginCounter;
+import com.yarago.auth.security.LoginIdentifierFilter;
+import com.yarago.auth.security.TokenValidityService;
+import com.yarago.auth.security.UserDetailsCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -14,8 +19,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -30,15 +38,46 @@ public class UserManagementService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenValidityService tokenValidityService;
+    private final UserDetailsCache userDetailsCache;
+    private final FailedLoginCounter failedLoginCounter;
+    private final LoginIdentifierFilter loginIdentifierFilter;
+
+    private static final int MAX_PAGE_SIZE = 200;
 
     /**
-     * Get all users
+     * List users a page at a time, keyset-paginated on id
+     * Rows are projected straight into DTOs and their roles read in one batch query, so a page costs
+     * two statements however large the table is. Pass the previous page's nextCursor to continue
      */
     @Transactional(readOnly = true)
-    public List<UserDTO> getAllUsers() {
-        return userRepository.findAll().stream()
-            .map(this::toUserDTO)
-            .collect(Collectors.toList());
+    public UserPage listUsers(Long cursor, int size, Long branchId, String department, String role,
+                              Boolean active, Boolean locked) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // One row past the page tells whether another page follows
+        List<UserDTO> users = userRepository.findUserRowsAfter(cursor != null ? cursor : 0L,
+            branchId, department, role, active, locked, size + 1);
+        Long nextCursor = null;
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            nextCursor = users.get(size - 1).getId();
+        }
+
+        if (!users.isEmpty()) {
+            Map<Long, Set<String>> rolesByUser = new HashMap<>();
+            for (Object[] row : userRepository.findRoleNamesByUserIds(users.stream().map(UserDTO::getId).toList())) {
+                rolesByUser.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((String) row[1]);
+            }
+            users.forEach(user -> user.setRoles(rolesByUser.getOrDefault(user.getId(), new HashSet<>())));
+        }
+
+        return UserPage.builder()
+            .users(users)
+            .nextCursor(nextCursor)
+            .build();
     }
 
     /**
@@ -99,6 +138,7 @@ public class UserManagementService {
         }
 
         user = userRepository.save(user);
+        loginIdentifierFilter.add(user.getUsername(), user.getEmail());
         log.info("User created: {}", user.getUsername());
 
         return toUserDTO(user);
@@ -111,6 +151,7 @@ public class UserManagementService {
     public UserDTO updateUser(Long userId, UpdateUserRequest request) {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
+        String previousEmail = user.getEmail();
 
         // Update email if changed
         if (request.getEmail() != null && !request.getEmail().equals(user.getEmail())) {
@@ -138,10 +179,14 @@ public class UserManagementService {
         if (request.getEmployeeId() != null) {
             user.setEmployeeId(request.getEmployeeId());
         }
+        // Branch, roles and deactivation are carried in issued access tokens
+        boolean tokenClaimsChanged = false;
         if (request.getBranchId() != null) {
+            tokenClaimsChanged = !request.getBranchId().equals(user.getBranchId());
             user.setBranchId(request.getBranchId());
         }
         if (request.getActive() != null) {
+            tokenClaimsChanged |= !request.getActive();
             user.setActive(request.getActive());
         }
 
@@ -153,10 +198,19 @@ public class UserManagementService {
                     .orElseThrow(() -> new IllegalArgumentException("Role not found: " + roleName));
                 roles.add(role);
             }
+            tokenClaimsChanged |= !Objects.equals(roles, user.getRoles());
             user.setRoles(roles);
         }
 
         user = userRepository.save(user);
+        userDetailsCache.evict(user.getUsername(), previousEmail, user.getEmail());
+        if (!user.getEmail().equals(previousEmail)) {
+            loginIdentifierFilter.add(user.getEmail());
+        }
+
+        if (tokenClaimsChanged) {
+            tokenValidityService.invalidateUserTokens(user.getId());
+        }
         log.info("User updated: {}", user.getUsername());
 
         return toUserDTO(user);
@@ -179,6 +233,12 @@ public class UserManagementService {
         }
 
         userRepository.save(user);
+        userDetailsCache.evict(user.getUsername(), user.getEmail());
+
+        if (!active) {
+            failedLoginCounter.reset(user.getId());
+            tokenValidityService.invalidateUserTokens(user.getId());
+        }
         log.info("User {} status changed to: {}", user.getUsername(), active ? "active" : "inactive");
     }
 
@@ -193,6 +253,8 @@ public class UserManagementService {
         user.setAccountLocked(false);
         user.setFailedLoginAttempts(0);
         userRepository.save(user);
+        userDetailsCache.evict(user.getUsername(), user.getEmail());
+        failedLoginCounter.reset(user.getId());
         log.info("User {} account unlocked", user.getUsername());
     }
 
@@ -209,6 +271,9 @@ public class UserManagementService {
         user.setAccountLocked(false);
         user.setFailedLoginAttempts(0);
         userRepository.save(user);
+        userDetailsCache.evict(user.getUsername(), user.getEmail());
+        failedLoginCounter.reset(user.getId());
+        tokenValidityService.invalidateTokensIssuedBefore(user.getId(), user.getPasswordChangedAt());
         log.info("Password reset for user: {}", user.getUsername());
     }
 
@@ -220,7 +285,11 @@ public class UserManagementService {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
 
+        // Before the delete, the epoch outlives the row so restarted nodes keep rejecting the user's tokens
+        tokenValidityService.invalidateDeletedUserTokens(user.getId());
         userRepository.delete(user);
+        // The login identifier filter cannot forget entries, its periodic rebuild drops them
+        userDetailsCache.evict(user.getUsername(), user.getEmail());
         log.info("User deleted: {}", user.getUsername());
     }
 
@@ -0,0 +1,14 @@
+-- Yarago Hospital ERP - Persist token validity epochs
+-- Created: 2026-10-16
+-- Description: Record when each user's issued access tokens stopped being acceptable, so every node seeds the same epochs
+
+-- Step 1: Epoch column, advanced on lockouts, deactivations, password changes and role or branch changes
+ALTER TABLE users ADD COLUMN tokens_not_before TIMESTAMP;
+
+-- Step 2: Backfill from the changes the epochs were previously derived from
+UPDATE users
+SET tokens_not_before = GREATEST(password_changed_at,
+                                 CASE WHEN active = false OR account_locked = true THEN updated_at END)
+WHERE password_changed_at IS NOT NULL OR active = false OR account_locked = true;
+
+CREATE INDEX idx_users_tokens_not_before ON users(tokens_not_before) WHERE tokens_not_before IS NOT NULL;
@@ -0,0 +1,9 @@
+-- Yarago Hospital ERP - Token validity epochs of deleted users
+-- Created: 2026-10-16
+-- Description: Keep a deleted user's epoch after the users row is gone, so restarted nodes still reject their access tokens
+
+-- No foreign key, the row exists precisely because the user does not
+CREATE TABLE deleted_user_token_epochs (
+    user_id BIGINT PRIMARY KEY,
+    tokens_not_before TIMESTAMP NOT NULL
+);
@@ -0,0 +1,15 @@
+-- Yarago Hospital ERP - Stop login bookkeeping from touching users.updated_at
+-- Created: 2026-10-16
+-- Description: Fire the updated_at trigger only for business columns, not last_login_at or failed_login_attempts
+
+-- Step 1: Drop the trigger that fired on every update of users
+DROP TRIGGER IF EXISTS update_users_updated_at ON users;
+
+-- Step 2: Recreate it for the columns that describe the account
+-- last_login_at and failed_login_attempts are written on every login and must not churn updated_at,
+-- which also seeds token validity epochs after lockouts and deactivations
+CREATE TRIGGER update_users_updated_at BEFORE UPDATE OF
+    username, email, password, first_name, last_name, phone_number, designation, department,
+    employee_id, branch_id, active, account_locked, password_changed_at, created_by
+    ON users
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
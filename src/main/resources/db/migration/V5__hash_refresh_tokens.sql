@@ -0,0 +1,17 @@
+-- Yarago Hospital ERP - Store refresh tokens by SHA-256 digest
+-- Created: 2026-10-16
+-- Description: Replace the VARCHAR(500) token column and its two B-trees with a 32-byte bytea digest under one unique index
+
+-- Step 1: Add the digest column and fill it from existing tokens (sha256() is built in since PostgreSQL 11)
+ALTER TABLE refresh_tokens ADD COLUMN token_hash BYTEA;
+
+UPDATE refresh_tokens SET token_hash = sha256(convert_to(token, 'UTF8'));
+
+ALTER TABLE refresh_tokens ALTER COLUMN token_hash SET NOT NULL;
+ALTER TABLE refresh_tokens ADD CONSTRAINT chk_refresh_tokens_token_hash_length CHECK (octet_length(token_hash) = 32);
+ALTER TABLE refresh_tokens ADD CONSTRAINT uk_refresh_tokens_token_hash UNIQUE (token_hash);
+
+-- Step 2: Drop the raw token, its redundant index and its unique constraint
+DROP INDEX IF EXISTS idx_refresh_tokens_token;
+DROP INDEX IF EXISTS idx_token;
+ALTER TABLE refresh_tokens DROP COLUMN token;
@@ -0,0 +1,14 @@
+-- Yarago Hospital ERP - Refresh token rotation with token families
+-- Created: 2026-10-16
+-- Description: Each refresh_tokens row becomes a token family that rotates in place by generation
+
+-- Step 1: Add family state, existing sessions become families at generation 0 (gen_random_uuid() is built in since PostgreSQL 13)
+ALTER TABLE refresh_tokens ADD COLUMN family_id UUID;
+ALTER TABLE refresh_tokens ADD COLUMN generation INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE refresh_tokens ADD COLUMN rotated_at TIMESTAMP;
+
+UPDATE refresh_tokens SET family_id = gen_random_uuid();
+
+-- Step 2: Families are looked up and swapped by id
+ALTER TABLE refresh_tokens ALTER COLUMN family_id SET NOT NULL;
+ALTER TABLE refresh_tokens ADD CONSTRAINT uk_refresh_tokens_family_id UNIQUE (family_id);
@@ -0,0 +1,60 @@
+-- Yarago Hospital ERP - Partition refresh_tokens by expiry
+-- Created: 2026-10-16
+-- Description: Range-partition refresh_tokens by expires_at into daily partitions so expired sessions are reclaimed by dropping partitions
+
+-- Step 1: Move the existing table aside, keeping its id sequence
+ALTER TABLE refresh_tokens RENAME TO refresh_tokens_legacy;
+ALTER SEQUENCE refresh_tokens_id_seq OWNED BY NONE;
+
+-- Step 2: Partitioned table, primary and unique keys must include the partition key
+CREATE TABLE refresh_tokens (
+    id BIGINT NOT NULL DEFAULT nextval('refresh_tokens_id_seq'),
+    token_hash BYTEA NOT NULL,
+    user_id BIGINT NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked BOOLEAN NOT NULL DEFAULT false,
+    revoked_at TIMESTAMP,
+    ip_address VARCHAR(50),
+    user_agent VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    family_id UUID NOT NULL,
+    generation INTEGER NOT NULL DEFAULT 0,
+    rotated_at TIMESTAMP,
+    CONSTRAINT chk_refresh_tokens_token_hash_length CHECK (octet_length(token_hash) = 32)
+) PARTITION BY RANGE (expires_at);
+
+ALTER SEQUENCE refresh_tokens_id_seq OWNED BY refresh_tokens.id;
+
+-- Step 3: Daily partitions from yesterday until two weeks past the latest live token,
+-- RefreshTokenSweeper keeps creating them ahead and drops them once expired
+DO $$
+DECLARE
+    partition_day DATE := CURRENT_DATE - 1;
+    last_day DATE := GREATEST(CURRENT_DATE + 14,
+        (SELECT MAX(expires_at)::date + 1 FROM refresh_tokens_legacy));
+BEGIN
+    WHILE partition_day <= last_day LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF refresh_tokens FOR VALUES FROM (%L) TO (%L)',
+            'refresh_tokens_p' || to_char(partition_day, 'YYYYMMDD'), partition_day, partition_day + 1);
+        partition_day := partition_day + 1;
+    END LOOP;
+END $$;
+
+-- Step 4: Copy live and recently expired sessions, older rows are dead and not carried over
+INSERT INTO refresh_tokens (id, token_hash, user_id, expires_at, revoked, revoked_at, ip_address, user_agent,
+                            created_at, family_id, generation, rotated_at)
+SELECT id, token_hash, user_id, expires_at, revoked, revoked_at, ip_address, user_agent,
+       created_at, family_id, generation, rotated_at
+FROM refresh_tokens_legacy
+WHERE expires_at >= CURRENT_DATE - 1;
+
+DROP TABLE refresh_tokens_legacy;
+
+-- Step 5: Keys and indexes, created on the parent and inherited by every partition
+ALTER TABLE refresh_tokens ADD CONSTRAINT refresh_tokens_pkey PRIMARY KEY (id, expires_at);
+ALTER TABLE refresh_tokens ADD CONSTRAINT uk_refresh_tokens_token_hash UNIQUE (token_hash, expires_at);
+ALTER TABLE refresh_tokens ADD CONSTRAINT uk_refresh_tokens_family_id UNIQUE (family_id, expires_at);
+ALTER TABLE refresh_tokens ADD CONSTRAINT fk_refresh_tokens_user
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
+
+CREATE INDEX idx_refresh_tokens_user_id ON refresh_tokens(user_id);
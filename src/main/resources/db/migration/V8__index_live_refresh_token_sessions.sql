@@ -0,0 +1,7 @@
+-- Yarago Hospital ERP - Per-user index of live refresh token sessions
+-- Created: 2026-10-16
+-- Description: Partial index so session limits and revocation read only a user's unrevoked sessions, newest first
+
+-- Covers the session window on login (ordered by created_at) and logout revocation.
+-- idx_refresh_tokens_user_id stays for the ON DELETE CASCADE from users, which has to find revoked rows too
+CREATE INDEX idx_refresh_tokens_user_live ON refresh_tokens(user_id, created_at) WHERE revoked = false;
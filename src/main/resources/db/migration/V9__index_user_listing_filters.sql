@@ -0,0 +1,9 @@
+-- Yarago Hospital ERP - Indexes for the paginated user listing
+-- Created: 2026-10-16
+-- Description: Composite (filter, id) indexes so a keyset page of users filtered by branch or department reads only that page
+
+CREATE INDEX idx_users_branch_id_id ON users(branch_id, id);
+CREATE INDEX idx_users_department_id_id ON users(department, id);
+
+-- The branch index is a prefix of the new composite one, which serves lookups by branch alone
+DROP INDEX idx_users_branch_id;
@@ -0,0 +1,100 @@
+package com.yarago.auth.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Denylist behaviour once most of its slots hold live revocations
+ * Writes are counted through the sequence counter, which every write section advances by two
+ */
+class AccessTokenDenylistTest {
+
+    private static final int CAPACITY = 1024;
+    private static final int THRESHOLD = CAPACITY * 3 / 4;
+
+    @TempDir
+    Path directory;
+
+    private AccessTokenDenylist denylist;
+    private long expiresAt;
+
+    @BeforeEach
+    void open() {
+        denylist = new AccessTokenDenylist(mock(StringRedisTemplate.class),
+            mock(RedisMessageListenerContainer.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(denylist, "file", directory.resolve("token-denylist.bin"));
+        ReflectionTestUtils.setField(denylist, "requestedCapacity", CAPACITY);
+        ReflectionTestUtils.setField(denylist, "channel", "auth:token-denylist");
+        ReflectionTestUtils.invokeMethod(denylist, "open");
+        expiresAt = System.currentTimeMillis() / 1000 + 900;
+    }
+
+    @AfterEach
+    void close() {
+        ReflectionTestUtils.invokeMethod(denylist, "close");
+    }
+
+    @Test
+    void liveRevocationsPastTheThresholdAreNotCompactedOnEveryPut() {
+        // The put after the threshold compacts once and finds every entry live
+        fill(1, THRESHOLD + 2);
+        long sequence = sequence();
+
+        fill(THRESHOLD + 2, CAPACITY - 8);
+
+        // One write section per put, no further compaction
+        assertThat(sequence() - sequence).isEqualTo(2L * (CAPACITY - 8 - (THRESHOLD + 2)));
+        for (long key = 1; key < CAPACITY - 8; key++) {
+            assertThat(denylist.isRevoked(token(key))).isTrue();
+        }
+    }
+
+    @Test
+    void fullTableDropsRevocationsWithoutWriting() {
+        fill(1, CAPACITY + 1);
+        long sequence = sequence();
+
+        fill(CAPACITY + 1, CAPACITY + 100);
+
+        assertThat(sequence()).isEqualTo(sequence);
+        assertThat(denylist.isRevoked(token(CAPACITY + 1))).isFalse();
+        assertThat(denylist.isRevoked(token(1))).isTrue();
+    }
+
+    @Test
+    void repeatedRevocationOfALiveTokenDoesNotWrite() {
+        fill(1, 2);
+        long sequence = sequence();
+
+        fill(1, 2);
+
+        assertThat(sequence()).isEqualTo(sequence);
+    }
+
+    private void fill(long fromKey, long toKey) {
+        for (long key = fromKey; key < toKey; key++) {
+            ReflectionTestUtils.invokeMethod(denylist, "put", key, expiresAt);
+        }
+    }
+
+    private long sequence() {
+        MappedByteBuffer buffer = (MappedByteBuffer) ReflectionTestUtils.getField(denylist, "buffer");
+        return buffer.getLong(16);
+    }
+
+    private static VerifiedToken token(long jtiKey) {
+        return VerifiedToken.builder().jtiKey(jtiKey).build();
+    }
+}
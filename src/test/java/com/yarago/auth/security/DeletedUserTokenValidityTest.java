@@ -0,0 +1,65 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.AbstractIntegrationTest;
+import com.yarago.auth.entity.User;
+import com.yarago.auth.repository.DeletedUserTokenEpochRepository;
+import com.yarago.auth.repository.UserRepository;
+import com.yarago.auth.service.UserManagementService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A deleted user's access tokens stay rejected on a node that starts after the delete
+ */
+class DeletedUserTokenValidityTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserManagementService userManagementService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DeletedUserTokenEpochRepository deletedUserTokenEpochRepository;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Test
+    void restartedNodeRejectsTokensOfDeletedUser() {
+        String name = "deleted-" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@yarago.test");
+        user.setPassword("unused");
+        Long userId = userRepository.save(user).getId();
+        Date issuedAt = new Date(System.currentTimeMillis() - 1_000);
+
+        userManagementService.deleteUser(userId);
+
+        assertThat(userRepository.findById(userId)).isEmpty();
+        assertThat(deletedUserTokenEpochRepository.findById(userId)).isPresent();
+
+        TokenValidityService restarted = new TokenValidityService(userRepository, deletedUserTokenEpochRepository,
+            verifiedTokenCache, redisTemplate, listenerContainer);
+        ReflectionTestUtils.setField(restarted, "accessTokenExpiration", 900_000L);
+        ReflectionTestUtils.setField(restarted, "channel", "auth:token-validity:test");
+        restarted.loadRecentChanges();
+
+        assertThat(restarted.isTokenCurrent(userId, issuedAt)).isFalse();
+    }
+}
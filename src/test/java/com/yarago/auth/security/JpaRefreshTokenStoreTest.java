@@ -0,0 +1,17 @@
+package com.yarago.auth.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * The refresh token store contract against the refresh_tokens table, the default store
+ */
+class JpaRefreshTokenStoreTest extends RefreshTokenStoreContractTest {
+
+    @Autowired
+    private JpaRefreshTokenStore store;
+
+    @Override
+    protected RefreshTokenStore store() {
+        return store;
+    }
+}
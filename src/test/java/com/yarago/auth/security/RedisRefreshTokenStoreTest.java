@@ -0,0 +1,28 @@
+package com.yarago.auth.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * The refresh token store contract against the Redis container
+ * Built by hand on the shared context's template, so both stores run in one cached context
+ */
+class RedisRefreshTokenStoreTest extends RefreshTokenStoreContractTest {
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private RedisRefreshTokenStore store;
+
+    @BeforeEach
+    void createStore() {
+        store = new RedisRefreshTokenStore(redisTemplate);
+        store.rejectClusterMode();
+    }
+
+    @Override
+    protected RefreshTokenStore store() {
+        return store;
+    }
+}
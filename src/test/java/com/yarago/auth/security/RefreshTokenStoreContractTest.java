@@ -0,0 +1,149 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.AbstractIntegrationTest;
+import com.yarago.auth.entity.User;
+import com.yarago.auth.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Behaviour every RefreshTokenStore must share, run once per implementation
+ * Times are truncated to milliseconds, the coarsest precision any store keeps
+ */
+abstract class RefreshTokenStoreContractTest extends AbstractIntegrationTest {
+
+    private static final int MAX_SESSIONS = 2;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long userId;
+    private LocalDateTime now;
+
+    protected abstract RefreshTokenStore store();
+
+    @BeforeEach
+    void createUser() {
+        String name = "store-" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@yarago.test");
+        user.setPassword("unused");
+        userId = userRepository.save(user).getId();
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    @Test
+    void savedSessionIsFoundByFamilyAndByDigest() {
+        RefreshSession session = session(now);
+        store().save(session, MAX_SESSIONS);
+
+        RefreshSession byFamily = store().findByFamilyId(session.getFamilyId()).orElseThrow();
+        assertThat(byFamily.getUserId()).isEqualTo(userId);
+        assertThat(byFamily.getTokenHash()).isEqualTo(session.getTokenHash());
+        assertThat(byFamily.getGeneration()).isZero();
+        assertThat(byFamily.getExpiresAt()).isEqualTo(session.getExpiresAt());
+        assertThat(byFamily.getIpAddress()).isEqualTo("10.0.0.1");
+        assertThat(byFamily.getUserAgent()).isEqualTo("contract-test");
+        assertThat(byFamily.getCreatedAt()).isNotNull();
+        assertThat(byFamily.isValid(now)).isTrue();
+
+        assertThat(store().findByTokenHash(session.getTokenHash()))
+            .hasValueSatisfying(found -> assertThat(found.getFamilyId()).isEqualTo(session.getFamilyId()));
+    }
+
+    @Test
+    void unknownFamilyAndDigestAreNotFound() {
+        assertThat(store().findByFamilyId(UUID.randomUUID())).isEmpty();
+        assertThat(store().findByTokenHash(TokenHashing.sha256(UUID.randomUUID().toString()))).isEmpty();
+    }
+
+    @Test
+    void rotationAdvancesTheGenerationExactlyOnce() {
+        RefreshSession session = session(now);
+        store().save(session, MAX_SESSIONS);
+        byte[] next = TokenHashing.sha256(UUID.randomUUID().toString());
+
+        assertThat(store().rotate(session.getFamilyId(), 0, next, now)).isTrue();
+        assertThat(store().rotate(session.getFamilyId(), 0, TokenHashing.sha256("late"), now)).isFalse();
+
+        RefreshSession rotated = store().findByFamilyId(session.getFamilyId()).orElseThrow();
+        assertThat(rotated.getGeneration()).isEqualTo(1);
+        assertThat(rotated.getTokenHash()).isEqualTo(next);
+        assertThat(rotated.getRotatedAt()).isEqualTo(now);
+        assertThat(store().findByTokenHash(next)).isPresent();
+        assertThat(store().findByTokenHash(session.getTokenHash())).isEmpty();
+    }
+
+    @Test
+    void revokedFamilyIsInvalidAndCannotRotate() {
+        RefreshSession session = session(now);
+        store().save(session, MAX_SESSIONS);
+
+        store().revokeFamily(session.getFamilyId(), now);
+
+        assertThat(store().findByFamilyId(session.getFamilyId()))
+            .hasValueSatisfying(found -> assertThat(found.isValid(now)).isFalse());
+        assertThat(store().rotate(session.getFamilyId(), 0, TokenHashing.sha256("after-revoke"), now)).isFalse();
+        assertThat(store().countValid(userId, now)).isZero();
+    }
+
+    @Test
+    void revokeAllForUserRevokesEverySession() {
+        RefreshSession first = session(now);
+        RefreshSession second = session(now.plusSeconds(1));
+        store().save(first, MAX_SESSIONS);
+        store().save(second, MAX_SESSIONS);
+        assertThat(store().countValid(userId, now)).isEqualTo(2);
+
+        store().revokeAllForUser(userId, now.plusSeconds(2));
+
+        assertThat(store().countValid(userId, now.plusSeconds(2))).isZero();
+        assertThat(store().findByFamilyId(first.getFamilyId()))
+            .hasValueSatisfying(found -> assertThat(found.isRevoked()).isTrue());
+        assertThat(store().findByFamilyId(second.getFamilyId()))
+            .hasValueSatisfying(found -> assertThat(found.isRevoked()).isTrue());
+    }
+
+    @Test
+    void savingBeyondTheLimitRevokesOnlyTheOldestSession() {
+        RefreshSession oldest = session(now);
+        RefreshSession middle = session(now.plusSeconds(1));
+        RefreshSession newest = session(now.plusSeconds(2));
+        store().save(oldest, MAX_SESSIONS);
+        store().save(middle, MAX_SESSIONS);
+        store().save(newest, MAX_SESSIONS);
+
+        assertThat(store().countValid(userId, now)).isEqualTo(MAX_SESSIONS);
+        assertThat(store().findByFamilyId(oldest.getFamilyId()))
+            .hasValueSatisfying(found -> assertThat(found.isRevoked()).isTrue());
+        assertThat(store().findByFamilyId(middle.getFamilyId()))
+            .hasValueSatisfying(found -> assertThat(found.isRevoked()).isFalse());
+        assertThat(store().findByFamilyId(newest.getFamilyId()))
+            .hasValueSatisfying(found -> assertThat(found.isRevoked()).isFalse());
+    }
+
+    /**
+     * New family for the test user, later createdAt values sort as newer sessions
+     */
+    private RefreshSession session(LocalDateTime createdAt) {
+        return RefreshSession.builder()
+            .familyId(UUID.randomUUID())
+            .userId(userId)
+            .tokenHash(TokenHashing.sha256(UUID.randomUUID().toString()))
+            .generation(0)
+            .expiresAt(createdAt.plusDays(7))
+            .revoked(false)
+            .ipAddress("10.0.0.1")
+            .userAgent("contract-test")
+            .createdAt(createdAt)
+            .build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.repository.DeletedUserTokenEpochRepository;
+import com.yarago.auth.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Where the validity epoch falls against whole-second iat claims
+ */
+class TokenValidityServiceTest {
+
+    private static final Long USER_ID = 42L;
+
+    private TokenValidityService tokenValidityService;
+    private LocalDateTime second;
+
+    @BeforeEach
+    void createService() {
+        tokenValidityService = new TokenValidityService(mock(UserRepository.class),
+            mock(DeletedUserTokenEpochRepository.class), mock(VerifiedTokenCache.class),
+            mock(StringRedisTemplate.class), mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(tokenValidityService, "accessTokenExpiration", 900_000L);
+        ReflectionTestUtils.setField(tokenValidityService, "channel", "auth:token-validity");
+        second = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    @Test
+    void tokenIssuedEarlierInTheSameSecondIsRejected() {
+        Date issuedAt = toDate(second.plusNanos(300_000_000));
+
+        tokenValidityService.invalidateTokensIssuedBefore(USER_ID, second.plusNanos(700_000_000));
+
+        assertThat(tokenValidityService.isTokenCurrent(USER_ID, issuedAt)).isFalse();
+    }
+
+    @Test
+    void tokenIssuedTheSecondAfterIsAccepted() {
+        tokenValidityService.invalidateTokensIssuedBefore(USER_ID, second.plusNanos(700_000_000));
+
+        assertThat(tokenValidityService.isTokenCurrent(USER_ID, toDate(second.plusSeconds(1)))).isTrue();
+        assertThat(tokenValidityService.isTokenCurrent(USER_ID, toDate(second.minusSeconds(1)))).isFalse();
+    }
+
+    @Test
+    void otherUsersAreUnaffected() {
+        tokenValidityService.invalidateUserTokens(USER_ID);
+
+        assertThat(tokenValidityService.isTokenCurrent(USER_ID + 1, toDate(second.minusSeconds(1)))).isTrue();
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
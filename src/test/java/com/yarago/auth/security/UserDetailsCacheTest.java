@@ -0,0 +1,84 @@
+package com.yarago.auth.security;
+
+import com.yarago.auth.AbstractIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Both cache tiers against an eviction that lands while a lookup is loading the old row
+ */
+class UserDetailsCacheTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private String identifier;
+
+    @BeforeEach
+    void pickIdentifier() {
+        identifier = "cache-" + UUID.randomUUID();
+    }
+
+    @Test
+    void lookupIsServedFromCacheAfterTheFirstLoad() {
+        AtomicInteger loads = new AtomicInteger();
+
+        userDetailsCache.get(identifier, id -> {
+            loads.incrementAndGet();
+            return details(false);
+        });
+        userDetailsCache.get(identifier, id -> {
+            loads.incrementAndGet();
+            return details(false);
+        });
+
+        assertThat(loads).hasValue(1);
+        assertThat(redisTemplate.hasKey("auth:user-details:{" + identifier + "}")).isTrue();
+    }
+
+    @Test
+    void evictionDuringLoadKeepsTheStaleResultOutOfBothTiers() {
+        // The loader read the row before the lock committed, the eviction runs before it returns
+        CachedUserDetails stale = userDetailsCache.get(identifier, id -> {
+            userDetailsCache.evict(identifier);
+            return details(false);
+        });
+        assertThat(stale.isAccountLocked()).isFalse();
+
+        assertThat(redisTemplate.hasKey("auth:user-details:{" + identifier + "}")).isFalse();
+        CachedUserDetails fresh = userDetailsCache.get(identifier, id -> details(true));
+        assertThat(fresh.isAccountLocked()).isTrue();
+    }
+
+    @Test
+    void evictionAfterLoadClearsBothTiers() {
+        userDetailsCache.get(identifier, id -> details(false));
+
+        userDetailsCache.evict(identifier);
+
+        assertThat(redisTemplate.hasKey("auth:user-details:{" + identifier + "}")).isFalse();
+        assertThat(userDetailsCache.get(identifier, id -> details(true)).isAccountLocked()).isTrue();
+    }
+
+    private CachedUserDetails details(boolean locked) {
+        return CachedUserDetails.builder()
+            .userId(1L)
+            .username(identifier)
+            .email(identifier + "@yarago.test")
+            .active(true)
+            .accountLocked(locked)
+            .authorities(List.of("ROLE_DOCTOR"))
+            .build();
+    }
+}
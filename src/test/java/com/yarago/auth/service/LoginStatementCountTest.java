@@ -0,0 +1,97 @@
+package com.yarago.auth.service;
+
+import com.yarago.auth.AbstractIntegrationTest;
+import com.yarago.auth.dto.AuthResponse;
+import com.yarago.auth.dto.LoginRequest;
+import com.yarago.auth.entity.User;
+import com.yarago.auth.repository.RoleRepository;
+import com.yarago.auth.repository.UserRepository;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Statements issued per login, counted with Hibernate statistics
+ * A successful login loads the user with roles, caps sessions and inserts the refresh token;
+ * a failed one only loads the user, failure counting stays off the users row
+ */
+class LoginStatementCountTest extends AbstractIntegrationTest {
+
+    private static final String PASSWORD = "Correct-Horse-1";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "login-" + UUID.randomUUID();
+        User newUser = new User();
+        newUser.setUsername(name);
+        newUser.setEmail(name + "@yarago.test");
+        newUser.setPassword(passwordEncoder.encode(PASSWORD));
+        newUser.setRoles(new HashSet<>(Set.of(roleRepository.findByName("ROLE_DOCTOR").orElseThrow())));
+        user = userRepository.save(newUser);
+    }
+
+    @Test
+    void successfulLoginRunsThreeStatements() {
+        Statistics statistics = clearedStatistics();
+
+        AuthResponse response = authService.login(new LoginRequest(user.getUsername(), PASSWORD, "10.0.0.1", "test"));
+
+        assertThat(response.getAccessToken()).isNotBlank();
+        // findForLogin, revokeOldestSessionsBeyond, refresh token insert
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void successfulLoginByEmailRunsThreeStatements() {
+        Statistics statistics = clearedStatistics();
+
+        authService.login(new LoginRequest(user.getEmail(), PASSWORD, "10.0.0.1", "test"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void wrongPasswordRunsOneStatement() {
+        Statistics statistics = clearedStatistics();
+
+        assertThatThrownBy(() -> authService.login(new LoginRequest(user.getUsername(), "wrong", "10.0.0.1", "test")))
+            .isInstanceOf(BadCredentialsException.class);
+
+        // findForLogin only, the failure is counted outside the database
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownUserRunsOneStatement() {
+        Statistics statistics = clearedStatistics();
+
+        assertThatThrownBy(() -> authService.login(new LoginRequest("nobody-" + UUID.randomUUID(), PASSWORD, null, null)))
+            .isInstanceOf(BadCredentialsException.class);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
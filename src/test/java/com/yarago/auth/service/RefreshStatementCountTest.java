@@ -0,0 +1,92 @@
+package com.yarago.auth.service;
+
+import com.yarago.auth.AbstractIntegrationTest;
+import com.yarago.auth.dto.AuthResponse;
+import com.yarago.auth.dto.LoginRequest;
+import com.yarago.auth.dto.RefreshTokenRequest;
+import com.yarago.auth.entity.User;
+import com.yarago.auth.repository.RoleRepository;
+import com.yarago.auth.repository.UserRepository;
+import com.yarago.auth.security.RefreshTokenStore;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Statements issued per refresh on the default store, counted with Hibernate statistics
+ * The session, its user and roles come back in one query; a successful refresh adds only the rotation update
+ */
+class RefreshStatementCountTest extends AbstractIntegrationTest {
+
+    private static final String PASSWORD = "Correct-Horse-1";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "refresh-" + UUID.randomUUID();
+        User newUser = new User();
+        newUser.setUsername(name);
+        newUser.setEmail(name + "@yarago.test");
+        newUser.setPassword(passwordEncoder.encode(PASSWORD));
+        newUser.setRoles(new HashSet<>(Set.of(roleRepository.findByName("ROLE_DOCTOR").orElseThrow())));
+        user = userRepository.save(newUser);
+    }
+
+    @Test
+    void refreshRunsOneQueryAndTheRotation() {
+        String refreshToken = login().getRefreshToken();
+        Statistics statistics = clearedStatistics();
+
+        AuthResponse response = authService.refreshToken(new RefreshTokenRequest(refreshToken));
+
+        assertThat(response.getAccessToken()).isNotBlank();
+        assertThat(response.getRefreshToken()).isNotEqualTo(refreshToken);
+        // findByFamilyId with the user and roles fetch-joined, then the rotate update
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(3);
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    @Test
+    void refreshOfRevokedFamilyRunsOneQuery() {
+        String refreshToken = login().getRefreshToken();
+        refreshTokenStore.revokeAllForUser(user.getId(), LocalDateTime.now());
+        Statistics statistics = clearedStatistics();
+
+        assertThatThrownBy(() -> authService.refreshToken(new RefreshTokenRequest(refreshToken)))
+            .isInstanceOf(BadCredentialsException.class);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private AuthResponse login() {
+        return authService.login(new LoginRequest(user.getUsername(), PASSWORD, "10.0.0.1", "test"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.yarago.auth.service;
+
+import com.yarago.auth.AbstractIntegrationTest;
+import com.yarago.auth.dto.UserDTO;
+import com.yarago.auth.dto.UserPage;
+import com.yarago.auth.entity.User;
+import com.yarago.auth.repository.RoleRepository;
+import com.yarago.auth.repository.UserRepository;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Filtered keyset pages of the user listing
+ * Each test lists its own department so rows from other tests never match
+ */
+class UserListingTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserManagementService userManagementService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private String department;
+    private User doctor;
+    private User lockedDoctor;
+    private User otherBranch;
+
+    @BeforeEach
+    void createUsers() {
+        department = "listing-" + UUID.randomUUID();
+        doctor = createUser(1L, false);
+        lockedDoctor = createUser(1L, true);
+        otherBranch = createUser(2L, false);
+    }
+
+    @Test
+    void pagesFollowTheCursorInIdOrder() {
+        Statistics statistics = clearedStatistics();
+
+        UserPage first = userManagementService.listUsers(null, 2, null, department, null, null, null);
+        // The row query and the batched role query
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(ids(first)).containsExactly(doctor.getId(), lockedDoctor.getId());
+        assertThat(first.getNextCursor()).isEqualTo(lockedDoctor.getId());
+        assertThat(first.getUsers()).allSatisfy(user -> assertThat(user.getRoles()).containsExactly("ROLE_DOCTOR"));
+
+        UserPage second = userManagementService.listUsers(first.getNextCursor(), 2, null, department, null, null, null);
+        assertThat(ids(second)).containsExactly(otherBranch.getId());
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void onlySetFiltersApply() {
+        assertThat(ids(userManagementService.listUsers(null, 50, 1L, department, null, null, null)))
+            .containsExactly(doctor.getId(), lockedDoctor.getId());
+        assertThat(ids(userManagementService.listUsers(null, 50, 1L, department, null, null, false)))
+            .containsExactly(doctor.getId());
+        assertThat(ids(userManagementService.listUsers(null, 50, null, department, "ROLE_DOCTOR", true, null)))
+            .containsExactly(doctor.getId(), lockedDoctor.getId(), otherBranch.getId());
+        assertThat(ids(userManagementService.listUsers(null, 50, null, department, "ROLE_ADMIN", null, null)))
+            .isEmpty();
+    }
+
+    private User createUser(Long branchId, boolean locked) {
+        String name = "listing-" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@yarago.test");
+        user.setPassword("unused");
+        user.setDepartment(department);
+        user.setBranchId(branchId);
+        user.setAccountLocked(locked);
+        user.setRoles(new HashSet<>(Set.of(roleRepository.findByName("ROLE_DOCTOR").orElseThrow())));
+        return userRepository.save(user);
+    }
+
+    private static List<Long> ids(UserPage page) {
+        return page.getUsers().stream().map(UserDTO::getId).toList();
+    }
+}